@@ -0,0 +1,291 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.api;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable entry with attributes, which takes less memory than a map of lists.
+ * <p>
+ * Attribute names are held by the shared {@link EntrySchema}. Values of all attributes are packed into one array
+ * in the order of the schema, so an entry consists of three objects regardless of count of its attributes.
+ */
+public final class CompactEntry {
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private final EntrySchema schema;
+    // Values of all attributes one after another.
+    private final String[] values;
+    // Start of values of each attribute in the values array and the end of the last one.
+    private final int[] offsets;
+
+    private CompactEntry(EntrySchema schema, String[] values, int[] offsets) {
+        this.schema = schema;
+        this.values = values;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Packs attributes of the map. Absent lists are kept as attributes without values.
+     */
+    public static CompactEntry of(Map<String, List<String>> attributes) {
+        EntrySchema schema = EntrySchema.of(attributes.keySet());
+        return pack(schema, attributes::get);
+    }
+
+    /**
+     * Adapter for storages, which return entries as maps.
+     */
+    public static List<CompactEntry> fromMaps(List<Map<String, List<String>>> entries) {
+        return entries.stream()
+                .map(CompactEntry::of)
+                .toList();
+    }
+
+    /**
+     * Views of entries as maps for the code, that works with maps.
+     */
+    public static List<Map<String, List<String>>> asMaps(List<CompactEntry> entries) {
+        return entries.stream()
+                .map(CompactEntry::asMap)
+                .toList();
+    }
+
+    private static CompactEntry pack(EntrySchema schema, ValuesSource source) {
+        List<String> names = schema.getAttributeNames();
+        var offsets = new int[names.size() + 1];
+        int count = 0;
+        for (int i = 0; i < names.size(); i++) {
+            offsets[i] = count;
+            List<String> attributeValues = source.get(names.get(i));
+            count += attributeValues == null ? 0 : attributeValues.size();
+        }
+        offsets[names.size()] = count;
+
+        var values = count == 0 ? NO_VALUES : new String[count];
+        for (int i = 0; i < names.size(); i++) {
+            List<String> attributeValues = source.get(names.get(i));
+            if (attributeValues != null) {
+                for (int j = 0; j < attributeValues.size(); j++) {
+                    values[offsets[i] + j] = attributeValues.get(j);
+                }
+            }
+        }
+
+        return new CompactEntry(schema, values, offsets);
+    }
+
+    public EntrySchema getSchema() {
+        return schema;
+    }
+
+    public List<String> getAttributeNames() {
+        return schema.getAttributeNames();
+    }
+
+    public boolean hasAttribute(String attributeName) {
+        return schema.indexOf(attributeName) >= 0;
+    }
+
+    /**
+     * @return Unmodifiable values of the attribute or null, if the entry has no such attribute.
+     */
+    public List<String> get(String attributeName) {
+        int position = schema.indexOf(attributeName);
+        return position < 0 ? null : new Values(offsets[position], offsets[position + 1]);
+    }
+
+    /**
+     * @return First value of the attribute or null, if the attribute is absent or has no values.
+     */
+    public String getFirst(String attributeName) {
+        int position = schema.indexOf(attributeName);
+        return position < 0 || offsets[position] == offsets[position + 1] ? null : values[offsets[position]];
+    }
+
+    /**
+     * @return Unmodifiable view of the entry.
+     */
+    public Map<String, List<String>> asMap() {
+        return new MapView();
+    }
+
+    /**
+     * @return Builder of a new entry with attributes of this one.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public static Builder builder() {
+        return new Builder(null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompactEntry)) {
+            return false;
+        }
+        CompactEntry that = (CompactEntry) o;
+        return schema == that.schema && Arrays.equals(offsets, that.offsets) && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * schema.hashCode() + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /**
+     * Collects changed attributes and packs them with the rest of attributes of the original entry at once.
+     */
+    public static final class Builder {
+
+        private final CompactEntry original;
+        private final Map<String, List<String>> changes = new TreeMap<>();
+        private final Set<String> removed = new HashSet<>();
+
+        private Builder(CompactEntry original) {
+            this.original = original;
+        }
+
+        public Builder put(String attributeName, List<String> attributeValues) {
+            changes.put(attributeName, attributeValues);
+            removed.remove(attributeName);
+            return this;
+        }
+
+        public Builder remove(String attributeName) {
+            changes.remove(attributeName);
+            removed.add(attributeName);
+            return this;
+        }
+
+        public CompactEntry build() {
+            if (original == null) {
+                return pack(EntrySchema.of(changes.keySet()), changes::get);
+            }
+            if (changes.isEmpty() && removed.isEmpty()) {
+                return original;
+            }
+
+            Set<String> names = new HashSet<>(original.getAttributeNames());
+            names.addAll(changes.keySet());
+            names.removeAll(removed);
+
+            return pack(EntrySchema.of(names), name -> changes.containsKey(name) ? changes.get(name) : original.get(name));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValuesSource {
+        List<String> get(String attributeName);
+    }
+
+    private final class Values extends AbstractList<String> implements RandomAccess {
+
+        private final int from;
+        private final int to;
+
+        Values(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return values[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    private final class MapView extends AbstractMap<String, List<String>> {
+
+        @Override
+        public List<String> get(Object key) {
+            return key instanceof String ? CompactEntry.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && hasAttribute((String) key);
+        }
+
+        @Override
+        public int size() {
+            return schema.size();
+        }
+
+        @Override
+        public Set<Entry<String, List<String>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, List<String>>> iterator() {
+                    return new Iterator<>() {
+                        int position;
+
+                        @Override
+                        public boolean hasNext() {
+                            return position < schema.size();
+                        }
+
+                        @Override
+                        public Entry<String, List<String>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int current = position++;
+                            return new SimpleImmutableEntry<>(schema.getAttributeNames().get(current),
+                                    new Values(offsets[current], offsets[current + 1]));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return schema.size();
+                }
+            };
+        }
+    }
+}
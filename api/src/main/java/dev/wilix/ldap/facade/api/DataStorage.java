@@ -18,6 +18,8 @@ package dev.wilix.ldap.facade.api;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Integration interface for receiving data from an external source.
@@ -42,6 +44,18 @@ public interface DataStorage {
      */
     Authentication authenticateService(String serviceName, String token);
 
+    /**
+     * Checks that the authentication sees all users of the storage, not only ones permitted to it.
+     * Binds of users, which are absent in entities loaded by such authentications, may be rejected without
+     * asking the storage.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @return True, if all users are visible. By default no authentication is known to see all of them.
+     */
+    default boolean seesAllUsers(Authentication authentication) {
+        return false;
+    }
+
     /**
      * Getting a list of users with groups.
      *
@@ -57,4 +71,72 @@ public interface DataStorage {
      * @return Result of search
      */
     List<Map<String, List<String>>> getAllGroups(Authentication authentication);
+
+    /**
+     * Getting a list of users with groups in the compact form.
+     * By default users are packed from {@link #getAllUsers(Authentication)}.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @return Result of search.
+     */
+    default List<CompactEntry> getAllUserEntries(Authentication authentication) {
+        return CompactEntry.fromMaps(getAllUsers(authentication));
+    }
+
+    /**
+     * Getting a list of groups with users in the compact form.
+     * By default groups are packed from {@link #getAllGroups(Authentication)}.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @return Result of search.
+     */
+    default List<CompactEntry> getAllGroupEntries(Authentication authentication) {
+        return CompactEntry.fromMaps(getAllGroups(authentication));
+    }
+
+    /**
+     * Getting users with groups one by one. Storages, which read users in parts, may pass them on,
+     * without holding all of them in memory. The stream is closed after reading.
+     * By default the stream goes over {@link #getAllUserEntries(Authentication)}.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @return Result of search.
+     */
+    default Stream<CompactEntry> streamUserEntries(Authentication authentication) {
+        return getAllUserEntries(authentication).stream();
+    }
+
+    /**
+     * Getting groups with users one by one. Storages, which read groups in parts, may pass them on,
+     * without holding all of them in memory. The stream is closed after reading.
+     * By default the stream goes over {@link #getAllGroupEntries(Authentication)}.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @return Result of search.
+     */
+    default Stream<CompactEntry> streamGroupEntries(Authentication authentication) {
+        return getAllGroupEntries(authentication).stream();
+    }
+
+    /**
+     * Getting a token, which marks the current state of users and groups. It is taken before the full search,
+     * so changes made during the search are returned since it again.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @return Sync token or null, if the storage does not track changes.
+     */
+    default String getSyncToken(Authentication authentication) {
+        return null;
+    }
+
+    /**
+     * Getting users and groups changed since the token.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @param syncToken      Token from {@link #getSyncToken(Authentication)} or from the previous changes.
+     * @return Changes or nothing, if they are not known anymore and users and groups have to be searched again.
+     */
+    default Optional<EntryChanges> getChangesSince(Authentication authentication, String syncToken) {
+        return Optional.empty();
+    }
 }
\ No newline at end of file
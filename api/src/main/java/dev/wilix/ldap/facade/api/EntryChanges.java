@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.api;
+
+import java.util.List;
+
+/**
+ * Users and groups changed in the storage since some sync token.
+ * <p>
+ * Changed entries are complete, as they would be returned by the full search. Added entries are changed ones too.
+ * When membership changes, both the user and the group are changed. Deleted entries are identified by names,
+ * as they are used for members of groups.
+ */
+public final class EntryChanges {
+
+    private final List<CompactEntry> changedUsers;
+    private final List<CompactEntry> changedGroups;
+    private final List<String> deletedUsers;
+    private final List<String> deletedGroups;
+    private final String syncToken;
+
+    /**
+     * @param syncToken Token to get the next changes since these ones.
+     */
+    public EntryChanges(List<CompactEntry> changedUsers, List<CompactEntry> changedGroups,
+                        List<String> deletedUsers, List<String> deletedGroups, String syncToken) {
+        this.changedUsers = List.copyOf(changedUsers);
+        this.changedGroups = List.copyOf(changedGroups);
+        this.deletedUsers = List.copyOf(deletedUsers);
+        this.deletedGroups = List.copyOf(deletedGroups);
+        this.syncToken = syncToken;
+    }
+
+    public List<CompactEntry> getChangedUsers() {
+        return changedUsers;
+    }
+
+    public List<CompactEntry> getChangedGroups() {
+        return changedGroups;
+    }
+
+    public List<String> getDeletedUsers() {
+        return deletedUsers;
+    }
+
+    public List<String> getDeletedGroups() {
+        return deletedGroups;
+    }
+
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    public boolean isEmpty() {
+        return changedUsers.isEmpty() && changedGroups.isEmpty() && deletedUsers.isEmpty() && deletedGroups.isEmpty();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.api;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sorted set of attribute names, shared by all entries having the same attributes.
+ * <p>
+ * Schemas are interned, so each set of attribute names is held in memory only once.
+ * Storages usually return a few kinds of entries, so there are only a few schemas.
+ * Interning is weak: a schema, that no entry uses anymore, is collected.
+ * Schemas are found without locking, so entries are packed by many threads at once.
+ */
+public final class EntrySchema {
+
+    private static final Map<List<String>, SchemaReference> SCHEMAS = new ConcurrentHashMap<>();
+    // References of collected schemas, which are removed from the map on next lookups.
+    private static final ReferenceQueue<EntrySchema> COLLECTED = new ReferenceQueue<>();
+
+    private final List<String> attributeNames;
+    private final Map<String, Integer> positions;
+
+    private EntrySchema(List<String> attributeNames) {
+        this.attributeNames = attributeNames;
+
+        positions = new HashMap<>();
+        for (int i = 0; i < attributeNames.size(); i++) {
+            positions.put(attributeNames.get(i), i);
+        }
+    }
+
+    /**
+     * @param attributeNames Names of attributes in any order. Names are case sensitive.
+     * @return Shared schema with these attributes.
+     */
+    public static EntrySchema of(Collection<String> attributeNames) {
+        List<String> sortedNames = attributeNames.stream().sorted().distinct().toList();
+        SchemaReference reference = SCHEMAS.get(sortedNames);
+        EntrySchema schema = reference == null ? null : reference.get();
+        if (schema != null) {
+            return schema;
+        }
+
+        removeCollected();
+        EntrySchema[] result = new EntrySchema[1];
+        SCHEMAS.compute(sortedNames, (names, current) -> {
+            result[0] = current == null ? null : current.get();
+            if (result[0] != null) {
+                return current;
+            }
+            result[0] = new EntrySchema(names);
+            return new SchemaReference(result[0]);
+        });
+        return result[0];
+    }
+
+    private static void removeCollected() {
+        for (Reference<? extends EntrySchema> reference = COLLECTED.poll(); reference != null;
+             reference = COLLECTED.poll()) {
+            // The map may already hold a new schema with the same names.
+            SCHEMAS.remove(((SchemaReference) reference).attributeNames, reference);
+        }
+    }
+
+    /**
+     * @return Names of attributes in the natural order.
+     */
+    public List<String> getAttributeNames() {
+        return attributeNames;
+    }
+
+    /**
+     * @return Position of the attribute in the schema or -1, if there is no such attribute.
+     */
+    public int indexOf(String attributeName) {
+        Integer position = positions.get(attributeName);
+        return position == null ? -1 : position;
+    }
+
+    public int size() {
+        return attributeNames.size();
+    }
+
+    @Override
+    public String toString() {
+        return attributeNames.toString();
+    }
+
+    /**
+     * Keeps names of the schema, so the collected schema is removed from the map by them.
+     */
+    private static final class SchemaReference extends WeakReference<EntrySchema> {
+        private final List<String> attributeNames;
+
+        SchemaReference(EntrySchema schema) {
+            super(schema, COLLECTED);
+            this.attributeNames = schema.attributeNames;
+        }
+    }
+}
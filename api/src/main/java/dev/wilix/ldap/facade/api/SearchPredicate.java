@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.api;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Simplified search filter, which storages are able to evaluate themselves.
+ * <p>
+ * Attribute names are compared ignoring case, as in LDAP. Values are compared ignoring case
+ * and insignificant spaces: leading, trailing and repeated ones.
+ */
+public final class SearchPredicate {
+
+    public enum Type {
+        EQUALS, STARTS_WITH, AND, OR
+    }
+
+    private final Type type;
+    private final String attribute;
+    private final String value;
+    private final List<SearchPredicate> operands;
+    // Value prepared for matching.
+    private final String normalizedValue;
+
+    private SearchPredicate(Type type, String attribute, String value, List<SearchPredicate> operands) {
+        this.type = type;
+        this.attribute = attribute;
+        this.value = value;
+        this.operands = operands;
+        this.normalizedValue = value == null ? null : normalize(value, type == Type.STARTS_WITH);
+    }
+
+    public static SearchPredicate equalTo(String attribute, String value) {
+        return new SearchPredicate(Type.EQUALS, attribute, value, List.of());
+    }
+
+    public static SearchPredicate startsWith(String attribute, String prefix) {
+        return new SearchPredicate(Type.STARTS_WITH, attribute, prefix, List.of());
+    }
+
+    public static SearchPredicate and(List<SearchPredicate> operands) {
+        return new SearchPredicate(Type.AND, null, null, List.copyOf(operands));
+    }
+
+    public static SearchPredicate or(List<SearchPredicate> operands) {
+        return new SearchPredicate(Type.OR, null, null, List.copyOf(operands));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return Name of the compared attribute or null for AND and OR.
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * @return Compared value or prefix, null for AND and OR.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return Operands of AND and OR, empty for comparisons.
+     */
+    public List<SearchPredicate> getOperands() {
+        return operands;
+    }
+
+    /**
+     * Evaluates the predicate for storages, which hold entries in memory.
+     */
+    public boolean matches(Map<String, List<String>> entry) {
+        switch (type) {
+            case AND:
+                return operands.stream().allMatch(operand -> operand.matches(entry));
+            case OR:
+                return operands.stream().anyMatch(operand -> operand.matches(entry));
+            default:
+                return entry.entrySet().stream()
+                        .filter(attribute -> attribute.getKey().equalsIgnoreCase(this.attribute))
+                        .flatMap(attribute -> attribute.getValue().stream())
+                        .anyMatch(this::matchesValue);
+        }
+    }
+
+    private boolean matchesValue(String attributeValue) {
+        if (attributeValue == null) {
+            return false;
+        }
+        String normalizedAttributeValue = normalize(attributeValue, false);
+        return type == Type.EQUALS
+                ? normalizedAttributeValue.equals(normalizedValue)
+                : normalizedAttributeValue.startsWith(normalizedValue);
+    }
+
+    /**
+     * Lowers the case, removes leading spaces and replaces repeated spaces with one.
+     *
+     * @param prefix Trailing spaces of a prefix are kept as one space, because the value has to continue after them.
+     */
+    private static String normalize(String value, boolean prefix) {
+        var result = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ' ') {
+                space = true;
+                continue;
+            }
+            if (space && result.length() > 0) {
+                result.append(' ');
+            }
+            space = false;
+            result.append(c);
+        }
+        if (space && prefix && result.length() > 0) {
+            result.append(' ');
+        }
+        return result.toString().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case EQUALS:
+                return "(" + attribute + "=" + value + ")";
+            case STARTS_WITH:
+                return "(" + attribute + "=" + value + "*)";
+            default:
+                return operands.stream()
+                        .map(SearchPredicate::toString)
+                        .collect(Collectors.joining("", type == Type.AND ? "(&" : "(|", ")"));
+        }
+    }
+}
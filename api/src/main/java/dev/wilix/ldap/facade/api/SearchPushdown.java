@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.api;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Optional part of a storage, which finds users by a predicate without loading all of them.
+ * It is used for searches of users, while users and groups are not loaded yet.
+ */
+public interface SearchPushdown {
+
+    /**
+     * Finding users matching the predicate. Found users are filtered again by the server,
+     * so they may include users, which do not match exactly. Users, that are not found, are missed by the search,
+     * so values have to be compared ignoring case.
+     *
+     * @param authentication Information about the current user \ service authentication.
+     * @param predicate      Predicate on attributes of users.
+     * @param attributes     Names of attributes needed by the search. Empty list means all of them.
+     *                       Users may have other attributes too.
+     * @return Found users or nothing, if the storage can not evaluate the predicate.
+     */
+    Optional<List<CompactEntry>> findUsers(Authentication authentication, SearchPredicate predicate,
+                                           List<String> attributes);
+}
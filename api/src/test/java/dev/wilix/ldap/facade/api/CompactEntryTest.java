@@ -0,0 +1,119 @@
+package dev.wilix.ldap.facade.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactEntryTest {
+
+    @Test
+    public void packAttributes() {
+        CompactEntry entry = CompactEntry.of(Map.of("uid", List.of("username"), "mail", List.of("a@b.c", "d@e.f")));
+
+        assertEquals(List.of("mail", "uid"), entry.getAttributeNames());
+        assertEquals(List.of("a@b.c", "d@e.f"), entry.get("mail"));
+        assertEquals("username", entry.getFirst("uid"));
+        assertTrue(entry.hasAttribute("uid"));
+        assertNull(entry.get("cn"));
+        assertNull(entry.getFirst("cn"));
+        assertThrows(UnsupportedOperationException.class, () -> entry.get("mail").set(0, "other"));
+    }
+
+    @Test
+    public void packAttributesWithoutValues() {
+        Map<String, List<String>> attributes = new HashMap<>();
+        attributes.put("uid", List.of("username"));
+        attributes.put("cn", null);
+        attributes.put("mail", List.of());
+        CompactEntry entry = CompactEntry.of(attributes);
+
+        assertTrue(entry.hasAttribute("cn"));
+        assertEquals(List.of(), entry.get("cn"));
+        assertNull(entry.getFirst("cn"));
+        assertEquals(List.of(), entry.get("mail"));
+        assertEquals("username", entry.getFirst("uid"));
+
+        assertEquals(List.of(), CompactEntry.of(Map.of()).getAttributeNames());
+        assertEquals(CompactEntry.of(Map.of()), CompactEntry.builder().build());
+    }
+
+    @Test
+    public void changeAttributesByBuilder() {
+        CompactEntry entry = CompactEntry.of(Map.of("uid", List.of("username"), "cn", List.of("User Name")));
+
+        CompactEntry changed = entry.toBuilder()
+                .put("mail", List.of("a@b.c"))
+                .put("cn", List.of("Other Name"))
+                .remove("uid")
+                .build();
+
+        assertEquals(Map.of("cn", List.of("Other Name"), "mail", List.of("a@b.c")), changed.asMap());
+        // The original entry is not changed.
+        assertEquals(Map.of("uid", List.of("username"), "cn", List.of("User Name")), entry.asMap());
+
+        // The last change of the attribute wins.
+        assertEquals(entry, entry.toBuilder().remove("cn").put("cn", List.of("User Name")).build());
+        assertFalse(entry.toBuilder().put("cn", List.of("User Name")).remove("cn").build().hasAttribute("cn"));
+        assertSame(entry, entry.toBuilder().build());
+    }
+
+    @Test
+    public void viewAsMap() {
+        Map<String, List<String>> attributes = new LinkedHashMap<>();
+        attributes.put("uid", List.of("username"));
+        attributes.put("memberof", List.of("first", "second"));
+        Map<String, List<String>> view = CompactEntry.of(attributes).asMap();
+
+        assertEquals(attributes, view);
+        assertEquals(attributes.hashCode(), view.hashCode());
+        assertEquals(2, view.size());
+        assertTrue(view.containsKey("memberof"));
+        assertFalse(view.containsKey("cn"));
+        assertNull(view.get(42));
+        assertEquals(List.of("memberof", "uid"), List.copyOf(view.keySet()));
+        assertThrows(UnsupportedOperationException.class, () -> view.put("cn", List.of()));
+    }
+
+    @Test
+    public void compareEntries() {
+        Map<String, List<String>> attributes = new LinkedHashMap<>();
+        attributes.put("uid", List.of("username"));
+        attributes.put("cn", List.of("User Name"));
+        Map<String, List<String>> reversedAttributes = new LinkedHashMap<>();
+        reversedAttributes.put("cn", List.of("User Name"));
+        reversedAttributes.put("uid", List.of("username"));
+
+        CompactEntry entry = CompactEntry.of(attributes);
+        CompactEntry sameEntry = CompactEntry.of(reversedAttributes);
+        assertEquals(entry, sameEntry);
+        assertEquals(entry.hashCode(), sameEntry.hashCode());
+
+        // Same values in other attributes.
+        assertNotEquals(entry, CompactEntry.of(Map.of("uid", List.of("username"), "sn", List.of("User Name"))));
+        // Same values split between attributes in another way.
+        assertNotEquals(CompactEntry.of(Map.of("a", List.of("x", "y"), "b", List.of())),
+                CompactEntry.of(Map.of("a", List.of("x"), "b", List.of("y"))));
+        assertNotEquals(entry, CompactEntry.of(Map.of("uid", List.of("username"))));
+
+        Map<String, List<String>> withoutValues = new HashMap<>();
+        withoutValues.put("cn", null);
+        assertEquals(CompactEntry.of(Map.of("cn", List.of())), CompactEntry.of(withoutValues));
+    }
+
+    @Test
+    public void convertLists() {
+        List<Map<String, List<String>>> maps = List.of(Map.of("uid", List.of("first")), Map.of("uid", List.of("second")));
+
+        List<CompactEntry> entries = CompactEntry.fromMaps(maps);
+
+        assertEquals(List.of("first", "second"),
+                entries.stream().map(entry -> entry.getFirst("uid")).toList());
+        assertEquals(maps, CompactEntry.asMaps(entries));
+        assertSame(entries.get(0).getSchema(), entries.get(1).getSchema());
+    }
+}
@@ -0,0 +1,57 @@
+package dev.wilix.ldap.facade.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntrySchemaTest {
+
+    @Test
+    public void schemasAreInterned() {
+        EntrySchema schema = EntrySchema.of(List.of("uid", "cn", "mail"));
+
+        assertSame(schema, EntrySchema.of(Set.of("mail", "uid", "cn")));
+        assertSame(schema, EntrySchema.of(List.of("cn", "cn", "mail", "uid")));
+        assertNotSame(schema, EntrySchema.of(List.of("uid", "cn")));
+        // Names are case sensitive.
+        assertNotSame(schema, EntrySchema.of(List.of("UID", "cn", "mail")));
+    }
+
+    @Test
+    public void attributesAreSorted() {
+        EntrySchema schema = EntrySchema.of(List.of("uid", "cn", "mail"));
+
+        assertEquals(List.of("cn", "mail", "uid"), schema.getAttributeNames());
+        assertEquals(3, schema.size());
+        assertEquals(0, schema.indexOf("cn"));
+        assertEquals(2, schema.indexOf("uid"));
+        assertEquals(-1, schema.indexOf("sn"));
+    }
+
+    @Test
+    public void schemasAreInternedConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<EntrySchema>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                List<String> names = List.of("concurrent" + i % 10, "uid");
+                Callable<EntrySchema> intern = () -> EntrySchema.of(names);
+                results.add(executor.submit(intern));
+            }
+
+            for (Future<EntrySchema> result : results) {
+                assertSame(EntrySchema.of(result.get().getAttributeNames()), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -97,6 +97,13 @@ public class EntityParser {
         return info;
     }
 
+    /**
+     * Values of additional attributes are not stored in CRM, so users can not be searched by them.
+     */
+    boolean isAdditionalUserAttribute(String attributeName) {
+        return additionalUserAttributes.keySet().stream().anyMatch(attributeName::equalsIgnoreCase);
+    }
+
     Map<String, List<String>> parseGroupInfo(JsonNode groupJsonNode) {
         Map<String, List<String>> info = new HashMap<>();
 
@@ -17,17 +17,22 @@
 package dev.wilix.ldap.facade.espo;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.api.CompactEntry;
 import dev.wilix.ldap.facade.api.DataStorage;
+import dev.wilix.ldap.facade.api.SearchPredicate;
+import dev.wilix.ldap.facade.api.SearchPushdown;
 import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URISyntaxException;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -37,36 +42,53 @@ import java.util.stream.StreamSupport;
  *
  * TODO Migrate to ignoreCaseMap
  */
-public class EspoDataStorage implements DataStorage {
+public class EspoDataStorage implements DataStorage, SearchPushdown {
     // TODO Need to add user verification to the flag isActive
     private final static Logger LOG = LoggerFactory.getLogger(EspoDataStorage.class);
     private static final String USER_AVATAR_PROPERTY_NAME = "jpegPhoto";
+    // Approximate sizes of objects, that hold entities, attributes and values.
+    // Attribute names are held by shared schemas, so they are not counted.
+    private static final int ENTITY_OVERHEAD_BYTES = 64;
+    private static final int ATTRIBUTE_OVERHEAD_BYTES = 4;
+    private static final int VALUE_OVERHEAD_BYTES = 48;
+    // Fields of CRM users by attributes, which are taken from them.
+    private static final Map<String, String> USER_FIELDS_BY_ATTRIBUTE = createUserFieldsByAttribute();
 
     private boolean loadUsersAvatars;
 
     private final RequestHelper requestHelper;
     private final AvatarHelper avatarHelper;
     private final EntityParser entityParser;
-    private final Cache<Authentication, List<Map<String, List<String>>>> users;
-    private final Cache<Authentication, List<Map<String, List<String>>>> groups;
+    private final Cache<Authentication, List<CompactEntry>> users;
+    private final Cache<Authentication, List<CompactEntry>> groups;
+    // Equal entities, loaded for different authentications, are kept only once.
+    private final Interner<CompactEntry> entitiesInterner = Interners.newWeakInterner();
 
     private final String authenticateUserUri;
     private final String searchAllUsersUri;
     private final String searchAllGroupsUri;
 
-    public EspoDataStorage(RequestHelper requestHelper, EntityParser entityParser, int cacheExpirationMinutes, String baseUrl, boolean loadUsersAvatars) {
+    public EspoDataStorage(RequestHelper requestHelper, EntityParser entityParser, int cacheExpirationMinutes,
+                           long cacheMaxSizeMb, String baseUrl, boolean loadUsersAvatars) {
         this.requestHelper = requestHelper;
         this.avatarHelper = new AvatarHelper(baseUrl, requestHelper);
         this.entityParser = entityParser;
 
         this.loadUsersAvatars = loadUsersAvatars;
 
-        users = CacheBuilder.newBuilder()
+        // Users and groups share the memory budget. It is measured in kilobytes of estimated size.
+        users = Caffeine.newBuilder()
                 .expireAfterWrite(cacheExpirationMinutes, TimeUnit.MINUTES)
+                .maximumWeight(cacheMaxSizeMb * 1024 / 2)
+                .weigher((Authentication authentication, List<CompactEntry> entities) -> weigh(entities))
+                .recordStats()
                 .build();
 
-        groups = CacheBuilder.newBuilder()
+        groups = Caffeine.newBuilder()
                 .expireAfterWrite(cacheExpirationMinutes, TimeUnit.MINUTES)
+                .maximumWeight(cacheMaxSizeMb * 1024 / 2)
+                .weigher((Authentication authentication, List<CompactEntry> entities) -> weigh(entities))
+                .recordStats()
                 .build();
 
         try {
@@ -117,22 +139,129 @@ public class EspoDataStorage implements DataStorage {
         }
     }
 
+    /**
+     * Users see only what their roles permit. Service accounts are expected to see all users.
+     */
+    @Override
+    public boolean seesAllUsers(Authentication authentication) {
+        return authentication instanceof ServiceAuthentication;
+    }
+
     @Override
     public List<Map<String, List<String>>> getAllUsers(Authentication authentication) {
-        try {
-            return users.get(authentication, () -> performUsersSearch(authentication));
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e.getCause());
-        }
+        return CompactEntry.asMaps(getAllUserEntries(authentication));
     }
 
     @Override
     public List<Map<String, List<String>>> getAllGroups(Authentication authentication) {
+        return CompactEntry.asMaps(getAllGroupEntries(authentication));
+    }
+
+    @Override
+    public List<CompactEntry> getAllUserEntries(Authentication authentication) {
+        return users.get(authentication, key -> internEntities(performUsersSearch(authentication)));
+    }
+
+    @Override
+    public List<CompactEntry> getAllGroupEntries(Authentication authentication) {
+        return groups.get(authentication, key -> internEntities(performGroupsSearch(authentication)));
+    }
+
+    /**
+     * Users are searched by the where[] parameters of CRM. They are not cached, because there are not all of them.
+     * Avatars are loaded, only if they are needed.
+     */
+    @Override
+    public Optional<List<CompactEntry>> findUsers(Authentication authentication, SearchPredicate predicate,
+                                                  List<String> attributes) {
+        String searchUsersUri;
         try {
-            return groups.get(authentication, () -> performGroupsSearch(authentication));
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e.getCause());
+            URIBuilder uriBuilder = new URIBuilder(searchAllUsersUri);
+            if ( ! addWhereParameters(uriBuilder, "where[0]", predicate)) {
+                return Optional.empty();
+            }
+            searchUsersUri = uriBuilder.build().toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Problem with URIBuilder", e);
         }
+
+        boolean loadAvatars = loadUsersAvatars && (attributes.isEmpty() ||
+                attributes.stream().anyMatch(USER_AVATAR_PROPERTY_NAME::equalsIgnoreCase));
+        JsonNode response = requestHelper.sendCrmRequestForJson(searchUsersUri, authentication);
+        return Optional.of(CompactEntry.fromMaps(parseUsers(response, authentication, loadAvatars)));
+    }
+
+    /**
+     * @return False, if the predicate has attributes, which are not taken from fields of CRM users.
+     */
+    private boolean addWhereParameters(URIBuilder uriBuilder, String prefix, SearchPredicate predicate) {
+        switch (predicate.getType()) {
+            case AND:
+            case OR:
+                uriBuilder.addParameter(prefix + "[type]", predicate.getType() == SearchPredicate.Type.AND ? "and" : "or");
+                for (int i = 0; i < predicate.getOperands().size(); i++) {
+                    if ( ! addWhereParameters(uriBuilder, prefix + "[value][" + i + "]", predicate.getOperands().get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                String field = USER_FIELDS_BY_ATTRIBUTE.get(predicate.getAttribute());
+                if (field == null || entityParser.isAdditionalUserAttribute(predicate.getAttribute())) {
+                    return false;
+                }
+                uriBuilder.addParameter(prefix + "[type]", predicate.getType() == SearchPredicate.Type.EQUALS ? "equals" : "startsWith");
+                uriBuilder.addParameter(prefix + "[attribute]", field);
+                uriBuilder.addParameter(prefix + "[value]", predicate.getValue());
+                return true;
+        }
+    }
+
+    private static Map<String, String> createUserFieldsByAttribute() {
+        Map<String, String> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        result.put("id", "id");
+        result.put("entryuuid", "id");
+        result.put("uid", "userName");
+        result.put("cn", "name");
+        result.put("telephoneNumber", "phoneNumber");
+        result.put("mail", "emailAddress");
+        result.put("gn", "firstName");
+        result.put("sn", "lastName");
+        return Collections.unmodifiableMap(result);
+    }
+
+    public CacheStats getUsersCacheStats() {
+        return users.stats();
+    }
+
+    public CacheStats getGroupsCacheStats() {
+        return groups.stats();
+    }
+
+    /**
+     * Rough estimate of the memory used by entities in kilobytes. Interned entities are counted for every list.
+     */
+    private static int weigh(List<CompactEntry> entities) {
+        long result = 0;
+        for (CompactEntry entity : entities) {
+            result += ENTITY_OVERHEAD_BYTES;
+            for (String attributeName : entity.getAttributeNames()) {
+                result += ATTRIBUTE_OVERHEAD_BYTES;
+                for (String value : entity.get(attributeName)) {
+                    result += VALUE_OVERHEAD_BYTES + (value == null ? 0 : 2L * value.length());
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, result / 1024 + 1);
+    }
+
+    /**
+     * Cached entities are shared between authentications. They are packed, so they take less memory and are immutable.
+     */
+    private List<CompactEntry> internEntities(List<Map<String, List<String>>> entities) {
+        return entities.stream()
+                .map(entity -> entitiesInterner.intern(CompactEntry.of(entity)))
+                .collect(Collectors.toUnmodifiableList());
     }
 
     private Map<String, List<String>> checkAuthentication(Authentication authentication) {
@@ -148,10 +277,10 @@ public class EspoDataStorage implements DataStorage {
 
         // FIXME Think about what to do with such an explicit declaration of attribute names.
         // Get group members based on the list of users and enrich the groups with this information.
-        var users = getAllUsers(authentication);
+        var users = getAllUserEntries(authentication);
         Map<String, List<String>> groupToUsers = new HashMap<>();
-        for (Map<String, List<String>> user : users) {
-            String userName = user.get("uid").get(0);
+        for (CompactEntry user : users) {
+            String userName = user.getFirst("uid");
             user.get("memberof").forEach(
                     groupName -> groupToUsers.computeIfAbsent(groupName, s -> new ArrayList<>()).add(userName));
         }
@@ -163,12 +292,16 @@ public class EspoDataStorage implements DataStorage {
 
     private List<Map<String, List<String>>> performUsersSearch(Authentication authentication) {
         JsonNode response = requestHelper.sendCrmRequestForJson(searchAllUsersUri, authentication);
+        return parseUsers(response, authentication, loadUsersAvatars);
+    }
 
+    private List<Map<String, List<String>>> parseUsers(JsonNode response, Authentication authentication,
+                                                       boolean loadAvatars) {
         List<Map<String, List<String>>> users = StreamSupport.stream(response.get("list").spliterator(), false)
                 .map(entityParser::parseUserInfo)
                 .collect(Collectors.toList());
 
-        if (loadUsersAvatars) {
+        if (loadAvatars) {
             users.forEach(user -> user.put(USER_AVATAR_PROPERTY_NAME, List.of(avatarHelper.getAvatarByUserId(user.get("id").get(0), authentication))));
         }
 
@@ -24,6 +24,7 @@ import dev.wilix.ldap.facade.espo.EspoDataStorage;
 import dev.wilix.ldap.facade.espo.RequestHelper;
 import dev.wilix.ldap.facade.espo.config.properties.EspoDataStorageConfigurationProperties;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -32,6 +33,7 @@ import org.springframework.context.annotation.Configuration;
 
 import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableConfigurationProperties({EspoDataStorageConfigurationProperties.class})
@@ -41,9 +43,17 @@ public class EspoStorageConfig {
     @Autowired
     EspoDataStorageConfigurationProperties config;
 
+    /**
+     * Executor of the application for storage calls. It runs virtual threads, when they are enabled.
+     */
+    @Autowired(required = false)
+    @Qualifier("storageExecutor")
+    Executor storageExecutor;
+
     @Bean
     public DataStorage userDataStorage() {
-        return new EspoDataStorage(requestHelper(), entityParser(), config.getCacheExpirationMinutes(), config.getBaseUrl(), config.isLoadAvatars());
+        return new EspoDataStorage(requestHelper(), entityParser(), config.getCacheExpirationMinutes(),
+                config.getCacheMaxSizeMb(), config.getBaseUrl(), config.isLoadAvatars());
     }
 
     @Bean
@@ -58,10 +68,15 @@ public class EspoStorageConfig {
 
     @Bean
     public HttpClient httpClient() {
-        return HttpClient.newBuilder()
+        var builder = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_1_1)
-                .connectTimeout(Duration.ofSeconds(10)) // TODO May need to make it into the settings.
-                .build();
+                .connectTimeout(Duration.ofSeconds(10)); // TODO May need to make it into the settings.
+
+        if (storageExecutor != null) {
+            builder.executor(storageExecutor);
+        }
+
+        return builder.build();
     }
 
     @Bean
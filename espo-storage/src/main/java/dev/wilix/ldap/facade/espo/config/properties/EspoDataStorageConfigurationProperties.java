@@ -30,6 +30,8 @@ public class EspoDataStorageConfigurationProperties {
 
     private int cacheExpirationMinutes = 2;
 
+    private long cacheMaxSizeMb = 256;
+
     @NotEmpty
     private String baseUrl;
 
@@ -45,6 +47,14 @@ public class EspoDataStorageConfigurationProperties {
         this.cacheExpirationMinutes = cacheExpirationMinutes;
     }
 
+    public long getCacheMaxSizeMb() {
+        return cacheMaxSizeMb;
+    }
+
+    public void setCacheMaxSizeMb(long cacheMaxSizeMb) {
+        this.cacheMaxSizeMb = cacheMaxSizeMb;
+    }
+
     public String getBaseUrl() {
         return baseUrl;
     }
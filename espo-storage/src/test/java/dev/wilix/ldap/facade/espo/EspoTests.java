@@ -10,20 +10,26 @@ import com.github.tomakehurst.wiremock.http.HttpStatus;
 import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
 import com.github.tomakehurst.wiremock.stubbing.StubMapping;
 import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.api.CompactEntry;
+import dev.wilix.ldap.facade.api.SearchPredicate;
 import dev.wilix.ldap.facade.espo.test_case.*;
 import dev.wilix.ldap.facade.espo.test_case.RequestTestCase.Target;
 import dev.wilix.ldap.facade.espo.test_case.TestCase.TestCaseRequest;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ArgumentsSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static dev.wilix.ldap.facade.espo.test_case.TestCase.AccountType.SERVICE;
@@ -117,6 +123,38 @@ public class EspoTests {
         }
     }
 
+    @Test
+    public void findUsersByWhereParameters() {
+        wireMockServer.addStubMapping(WireMock.get(urlPathEqualTo(USERS_URI))
+                .withBasicAuth(USER_AUTHENTICATION.getUserName(), USER_AUTHENTICATION.getPassword())
+                .willReturn(aResponse().withStatus(200).withBodyFile("users_info.json"))
+                .build());
+
+        Optional<List<CompactEntry>> users = espoDataStorage.findUsers(USER_AUTHENTICATION,
+                SearchPredicate.or(List.of(SearchPredicate.equalTo("uid", "username1"),
+                        SearchPredicate.startsWith("MAIL", "address"))),
+                List.of("uid", "mail"));
+
+        assertTrue(users.isPresent());
+        assertEquals("username1", users.get().get(0).getFirst("uid"));
+        // Avatars are not requested.
+        assertNull(users.get().get(0).get("jpegPhoto"));
+        checkRequest(1, USERS_URI);
+
+        String url = URLDecoder.decode(wireMockServer.getAllServeEvents().get(0).getRequest().getUrl(), StandardCharsets.UTF_8);
+        assertTrue(url.contains("where[0][type]=or" +
+                "&where[0][value][0][type]=equals&where[0][value][0][attribute]=userName&where[0][value][0][value]=username1" +
+                "&where[0][value][1][type]=startsWith&where[0][value][1][attribute]=emailAddress&where[0][value][1][value]=address"), url);
+    }
+
+    @Test
+    public void findUsersByUnknownAttribute() {
+        assertTrue(espoDataStorage.findUsers(USER_AUTHENTICATION,
+                SearchPredicate.and(List.of(SearchPredicate.equalTo("uid", "username1"),
+                        SearchPredicate.equalTo("company", "wilix"))), List.of()).isEmpty());
+        checkRequest(0, USERS_URI);
+    }
+
     private void getAndCheckEntities(Target target, Authentication authentication, String... attributes) {
         switch (target) {
             case USERS:
@@ -17,27 +17,52 @@
 package dev.wilix.ldap.facade.file;
 
 import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.api.CompactEntry;
 import dev.wilix.ldap.facade.api.DataStorage;
+import dev.wilix.ldap.facade.api.EntryChanges;
+import dev.wilix.ldap.facade.api.SearchPredicate;
+import dev.wilix.ldap.facade.api.SearchPushdown;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Implementing a file-based user and group storage.
+ * <p>
+ * Each parse of the file makes a new version of users and groups. Differences between recent versions are kept,
+ * so changes since them are returned without reading all users and groups.
  */
-public class FileDataStorage implements DataStorage {
+public class FileDataStorage implements DataStorage, SearchPushdown {
+
+    private static final int MAX_KEPT_DIFFERENCES = 16;
+    // Kept differences hold at most this part of users and groups. Larger changes are read fully anyway.
+    private static final double MAX_KEPT_DIFFERENCES_SHARE = 0.5;
 
     private final FileParser fileParser;
+    // Tokens of other instances, for example before restart, are not accepted.
+    private final String instanceId = UUID.randomUUID().toString();
 
     private final ReadWriteLock updateDataLock = new ReentrantReadWriteLock();
     private List<Map<String, List<String>>> users = Collections.emptyList();
     private List<Map<String, List<String>>> groups = Collections.emptyList();
     private Map<String, String> usersPasswordInfo;
+    private long version;
+    // Differences with previous versions for the last versions. The last one leads to the current version.
+    private final Deque<Difference> differences = new ArrayDeque<>();
+    private int keptDifferencesSize;
 
     public FileDataStorage(FileParser fileParser) {
         this.fileParser = fileParser;
@@ -49,16 +74,30 @@ public class FileDataStorage implements DataStorage {
         Lock lock = updateDataLock.writeLock();
         lock.lock();
         try {
-            users = parseResult.getUsers();
-            groups = parseResult.getGroups();
+            List<Map<String, List<String>>> newUsers = parseResult.getUsers();
+            List<Map<String, List<String>>> newGroups = parseResult.getGroups();
 
             // Puts data about password in separate storage and deletes it from main storage.
             Map<String, String> newUsersPasswordInfo = new HashMap<>();
-            for (Map<String, List<String>> user : users) {
+            for (Map<String, List<String>> user : newUsers) {
                 // TODO Make it grabs fields safely
                 newUsersPasswordInfo.put(user.get("uid").get(0), user.get("password").get(0));
                 user.remove("password");
             }
+
+            Difference difference = new Difference(users, newUsers, groups, newGroups);
+            differences.addLast(difference);
+            keptDifferencesSize += difference.size();
+            // Tokens older than kept differences are not known, so all users and groups are read for them.
+            long maxKeptSize = (long) (MAX_KEPT_DIFFERENCES_SHARE * (newUsers.size() + newGroups.size()));
+            while ( ! differences.isEmpty() &&
+                    (differences.size() > MAX_KEPT_DIFFERENCES || keptDifferencesSize > maxKeptSize)) {
+                keptDifferencesSize -= differences.removeFirst().size();
+            }
+            version++;
+
+            users = newUsers;
+            groups = newGroups;
             usersPasswordInfo = newUsersPasswordInfo;
 
         } finally {
@@ -97,6 +136,14 @@ public class FileDataStorage implements DataStorage {
         return Authentication.NEGATIVE;
     }
 
+    /**
+     * All users see the whole file.
+     */
+    @Override
+    public boolean seesAllUsers(Authentication authentication) {
+        return authentication.isSuccess();
+    }
+
     @Override
     public List<Map<String, List<String>>> getAllUsers(Authentication authentication) {
         if ( ! authentication.isSuccess()) {
@@ -126,4 +173,161 @@ public class FileDataStorage implements DataStorage {
             lock.unlock();
         }
     }
+
+    /**
+     * Users are held in memory, so they are filtered without packing all of them.
+     */
+    @Override
+    public Optional<List<CompactEntry>> findUsers(Authentication authentication, SearchPredicate predicate,
+                                                  List<String> attributes) {
+        if ( ! authentication.isSuccess()) {
+            throw new IllegalStateException("Access denied");
+        }
+
+        Lock lock = updateDataLock.readLock();
+        lock.lock();
+        try {
+            List<CompactEntry> result = new ArrayList<>();
+            for (Map<String, List<String>> user : users) {
+                if (predicate.matches(user)) {
+                    result.add(CompactEntry.of(user));
+                }
+            }
+            return Optional.of(result);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String getSyncToken(Authentication authentication) {
+        Lock lock = updateDataLock.readLock();
+        lock.lock();
+        try {
+            return createSyncToken();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<EntryChanges> getChangesSince(Authentication authentication, String syncToken) {
+        if ( ! authentication.isSuccess()) {
+            throw new IllegalStateException("Access denied");
+        }
+
+        Lock lock = updateDataLock.readLock();
+        lock.lock();
+        try {
+            long tokenVersion = parseSyncToken(syncToken);
+            if (tokenVersion < version - differences.size() || tokenVersion > version) {
+                return Optional.empty();
+            }
+
+            // Later differences override earlier ones.
+            var changedUsers = new LinkedHashMap<String, Map<String, List<String>>>();
+            var changedGroups = new LinkedHashMap<String, Map<String, List<String>>>();
+            var deletedUsers = new LinkedHashSet<String>();
+            var deletedGroups = new LinkedHashSet<String>();
+            long differenceVersion = version - differences.size();
+            for (Difference difference : differences) {
+                if (differenceVersion++ >= tokenVersion) {
+                    difference.applyTo(changedUsers, deletedUsers, changedGroups, deletedGroups);
+                }
+            }
+
+            return Optional.of(new EntryChanges(CompactEntry.fromMaps(new ArrayList<>(changedUsers.values())),
+                    CompactEntry.fromMaps(new ArrayList<>(changedGroups.values())),
+                    new ArrayList<>(deletedUsers), new ArrayList<>(deletedGroups), createSyncToken()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String createSyncToken() {
+        return instanceId + ":" + version;
+    }
+
+    /**
+     * @return Version of the token or -1, if the token was not made by this instance.
+     */
+    private long parseSyncToken(String syncToken) {
+        if (syncToken == null || ! syncToken.startsWith(instanceId + ":")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(syncToken.substring(instanceId.length() + 1));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Users and groups, which were changed or deleted in one version. They are identified by names.
+     */
+    private static final class Difference {
+        private final Map<String, Map<String, List<String>>> changedUsers;
+        private final Set<String> deletedUsers;
+        private final Map<String, Map<String, List<String>>> changedGroups;
+        private final Set<String> deletedGroups;
+
+        Difference(List<Map<String, List<String>>> oldUsers, List<Map<String, List<String>>> newUsers,
+                   List<Map<String, List<String>>> oldGroups, List<Map<String, List<String>>> newGroups) {
+            changedUsers = findChanged(oldUsers, newUsers);
+            deletedUsers = findDeleted(oldUsers, newUsers);
+            changedGroups = findChanged(oldGroups, newGroups);
+            deletedGroups = findDeleted(oldGroups, newGroups);
+        }
+
+        private static Map<String, Map<String, List<String>>> findChanged(List<Map<String, List<String>>> oldEntities,
+                                                                     List<Map<String, List<String>>> newEntities) {
+            Map<String, Map<String, List<String>>> oldByName = byName(oldEntities);
+            Map<String, Map<String, List<String>>> result = new LinkedHashMap<>();
+            for (Map<String, List<String>> entity : newEntities) {
+                String name = entity.get("uid").get(0);
+                if ( ! entity.equals(oldByName.get(name))) {
+                    result.put(name, entity);
+                }
+            }
+            return result;
+        }
+
+        private static Set<String> findDeleted(List<Map<String, List<String>>> oldEntities,
+                                               List<Map<String, List<String>>> newEntities) {
+            Set<String> result = new LinkedHashSet<>(byName(oldEntities).keySet());
+            result.removeAll(byName(newEntities).keySet());
+            return result;
+        }
+
+        private static Map<String, Map<String, List<String>>> byName(List<Map<String, List<String>>> entities) {
+            Map<String, Map<String, List<String>>> result = new HashMap<>();
+            for (Map<String, List<String>> entity : entities) {
+                result.put(entity.get("uid").get(0), entity);
+            }
+            return result;
+        }
+
+        int size() {
+            return changedUsers.size() + deletedUsers.size() + changedGroups.size() + deletedGroups.size();
+        }
+
+        void applyTo(Map<String, Map<String, List<String>>> allChangedUsers, Set<String> allDeletedUsers,
+                     Map<String, Map<String, List<String>>> allChangedGroups, Set<String> allDeletedGroups) {
+            merge(allChangedUsers, allDeletedUsers, changedUsers, deletedUsers);
+            merge(allChangedGroups, allDeletedGroups, changedGroups, deletedGroups);
+        }
+
+        private static void merge(Map<String, Map<String, List<String>>> changed, Set<String> deleted,
+                                  Map<String, Map<String, List<String>>> differenceChanged,
+                                  Set<String> differenceDeleted) {
+            differenceChanged.forEach((name, entity) -> {
+                changed.put(name, entity);
+                deleted.remove(name);
+            });
+            for (String name : differenceDeleted) {
+                changed.remove(name);
+                deleted.add(name);
+            }
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package dev.wilix.ldap.facade.file;
 
 import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.api.CompactEntry;
+import dev.wilix.ldap.facade.api.EntryChanges;
+import dev.wilix.ldap.facade.api.SearchPredicate;
 import dev.wilix.ldap.facade.file.config.properties.FileStorageConfigurationProperties;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -99,6 +102,64 @@ public class FileStorageTest {
         groupsInfo.forEach(e -> checkAttributes(e, attributes));
     }
 
+    @Test
+    public void receiveChangesSinceSyncToken() throws IOException {
+        String fileContent = Files.readString(Path.of(FILE_WITH_CORRECT_USERS_AND_GROUPS_INFO));
+        FileDataStorage fileDataStorage = new FileDataStorage(fileParser);
+        String emptyToken = fileDataStorage.getSyncToken(Authentication.POSITIVE);
+        fileDataStorage.performParse(fileContent);
+        String syncToken = fileDataStorage.getSyncToken(Authentication.POSITIVE);
+
+        // The first parse changes everything, so it is not kept.
+        assertTrue(fileDataStorage.getChangesSince(Authentication.POSITIVE, emptyToken).isEmpty());
+
+        EntryChanges noChanges = fileDataStorage.getChangesSince(Authentication.POSITIVE, syncToken).orElseThrow();
+        assertTrue(noChanges.isEmpty());
+        assertEquals(syncToken, noChanges.getSyncToken());
+
+        fileDataStorage.performParse(fileContent.replace("22222", "33333"));
+        fileDataStorage.performParse(fileContent.replace("22222", "44444"));
+
+        EntryChanges changes = fileDataStorage.getChangesSince(Authentication.POSITIVE, syncToken).orElseThrow();
+        assertEquals(1, changes.getChangedUsers().size());
+        assertEquals("username2", changes.getChangedUsers().get(0).getFirst("uid"));
+        assertEquals(List.of("44444"), changes.getChangedUsers().get(0).get("telephoneNumber"));
+        assertTrue(changes.getChangedGroups().isEmpty());
+        assertTrue(changes.getDeletedGroups().isEmpty());
+        assertTrue(changes.getDeletedUsers().isEmpty());
+
+        assertTrue(fileDataStorage.getChangesSince(Authentication.POSITIVE, changes.getSyncToken()).orElseThrow().isEmpty());
+        assertTrue(fileDataStorage.getChangesSince(Authentication.POSITIVE, "unknown:0").isEmpty());
+
+        // Renaming the group changes both users too, that is too much to keep.
+        fileDataStorage.performParse(fileContent.replace("22222", "44444").replace("\"name\": \"test2\"", "\"name\": \"test4\""));
+        assertTrue(fileDataStorage.getChangesSince(Authentication.POSITIVE, changes.getSyncToken()).isEmpty());
+        String lastToken = fileDataStorage.getSyncToken(Authentication.POSITIVE);
+        assertTrue(fileDataStorage.getChangesSince(Authentication.POSITIVE, lastToken).orElseThrow().isEmpty());
+    }
+
+    @Test
+    public void findUsersByPredicate() throws IOException {
+        String fileContent = Files.readString(Path.of(FILE_WITH_CORRECT_USERS_AND_GROUPS_INFO));
+        FileDataStorage fileDataStorage = new FileDataStorage(fileParser);
+        fileDataStorage.performParse(fileContent);
+
+        List<CompactEntry> users = fileDataStorage.findUsers(Authentication.POSITIVE,
+                SearchPredicate.and(List.of(SearchPredicate.startsWith("MAIL", "addres2"),
+                        SearchPredicate.equalTo("uid", "USERNAME2"))), List.of()).orElseThrow();
+        assertEquals(1, users.size());
+        assertEquals("username2", users.get(0).getFirst("uid"));
+
+        assertTrue(fileDataStorage.findUsers(Authentication.POSITIVE,
+                SearchPredicate.equalTo("uid", "nobody"), List.of()).orElseThrow().isEmpty());
+
+        // Insignificant spaces are ignored, as LDAP does it.
+        assertEquals(1, fileDataStorage.findUsers(Authentication.POSITIVE,
+                SearchPredicate.equalTo("uid", "  username2 "), List.of()).orElseThrow().size());
+        assertTrue(fileDataStorage.findUsers(Authentication.POSITIVE,
+                SearchPredicate.startsWith("uid", "username2 "), List.of()).orElseThrow().isEmpty());
+    }
+
     @Test
     public void exceptionOfReceiveGroupsInfo() {
         assertThrows(IllegalStateException.class, () -> fileDataStorage.getAllGroups(Authentication.NEGATIVE));
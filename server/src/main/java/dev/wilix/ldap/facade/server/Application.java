@@ -16,7 +16,7 @@
 
 package dev.wilix.ldap.facade.server;
 
-import com.unboundid.ldap.listener.LDAPListener;
+import dev.wilix.ldap.facade.server.listener.ConnectionListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,7 +30,7 @@ public class Application implements CommandLineRunner {
     private static final Logger LOG = LoggerFactory.getLogger(Application.class);
 
     @Autowired
-    LDAPListener listener;
+    ConnectionListener listener;
 
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
@@ -16,15 +16,24 @@
 
 package dev.wilix.ldap.facade.server.config;
 
-import com.unboundid.ldap.listener.LDAPListener;
 import com.unboundid.ldap.listener.LDAPListenerConfig;
 import com.unboundid.ldap.listener.LDAPListenerRequestHandler;
 import com.unboundid.util.ssl.KeyStoreKeyManager;
 import com.unboundid.util.ssl.SSLUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import dev.wilix.ldap.facade.api.DataStorage;
 import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
 import dev.wilix.ldap.facade.server.config.properties.ServerConfigurationProperties;
+import dev.wilix.ldap.facade.server.listener.AdmissionControl;
+import dev.wilix.ldap.facade.server.listener.BacklogServerSocketFactory;
+import dev.wilix.ldap.facade.server.listener.ConfiguredSSLServerSocketFactory;
+import dev.wilix.ldap.facade.server.listener.ConfiguredSSLSocketFactory;
+import dev.wilix.ldap.facade.server.listener.ConnectionListener;
+import dev.wilix.ldap.facade.server.listener.ExecutorConnectionListener;
+import dev.wilix.ldap.facade.server.listener.NioConnectionListener;
+import dev.wilix.ldap.facade.server.listener.ThreadPerConnectionListener;
 import dev.wilix.ldap.facade.server.processing.BindOperationProcessor;
+import dev.wilix.ldap.facade.server.processing.KnownUsersFilter;
 import dev.wilix.ldap.facade.server.processing.LdapNamingHelper;
 import dev.wilix.ldap.facade.server.processing.SearchOperationProcessor;
 import dev.wilix.ldap.facade.server.processing.UserBindAndSearchRequestHandler;
@@ -35,8 +44,15 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableConfigurationProperties({ServerConfigurationProperties.class, LdapConfigurationProperties.class})
@@ -50,9 +66,67 @@ public class RootConfig {
     @Autowired
     LdapConfigurationProperties ldapConfig;
 
+    // Shared by ldaps and StartTLS connections, so they share the cache of TLS sessions.
+    private SSLContext sslContext;
+
     @Bean
-    public LDAPListener ldapListener(LDAPListenerConfig listenerConfig) {
-        return new LDAPListener(listenerConfig);
+    public ConnectionListener connectionListener(LDAPListenerConfig listenerConfig,
+                                                 UserBindAndSearchRequestHandler requestHandler) {
+        if (serverConfig.getType() == ServerConfigurationProperties.ListenerType.NIO) {
+            if (serverConfig.isSslEnabled()) {
+                throw new IllegalStateException("SSL is not supported by nio listener. Use blocking listener.");
+            }
+            if (serverConfig.isStartTlsEnabled()) {
+                LOG.warn("StartTLS is not supported by nio listener. StartTLS requests would be rejected.");
+            }
+            LOG.info("Connections are handled by nio listener...");
+            return new NioConnectionListener(listenerConfig, requestHandler::newInstance,
+                    serverConfig.getEventLoopThreads(), serverConfig.getAcceptBacklog(), requestExecutor());
+        }
+
+        if (serverConfig.isVirtualThreadsEnabled()) {
+            var executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor.isPresent()) {
+                LOG.info("Connections are handled in virtual threads...");
+                return new ExecutorConnectionListener(listenerConfig, executor.get());
+            }
+        }
+
+        return new ThreadPerConnectionListener(listenerConfig);
+    }
+
+    /**
+     * Executor for requests of the nio listener.
+     */
+    private ExecutorService requestExecutor() {
+        if (serverConfig.isVirtualThreadsEnabled()) {
+            var executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor.isPresent()) {
+                return executor.get();
+            }
+        }
+
+        var executor = new ThreadPoolExecutor(serverConfig.getWorkerThreads(), serverConfig.getWorkerThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("ldap-worker-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Executor for calls to the storage, which are made in background (not while handling a request).
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService storageExecutor() {
+        if (serverConfig.isVirtualThreadsEnabled()) {
+            var executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor.isPresent()) {
+                return executor.get();
+            }
+        }
+
+        return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("storage-%d").setDaemon(true).build());
     }
 
     @Bean
@@ -68,6 +142,9 @@ public class RootConfig {
             LOG.info("SSL is turned off...");
         }
 
+        ldapListenerConfig.setServerSocketFactory(new BacklogServerSocketFactory(
+                ldapListenerConfig.getServerSocketFactory(), serverConfig.getAcceptBacklog()));
+
         return ldapListenerConfig;
     }
 
@@ -75,11 +152,41 @@ public class RootConfig {
      * Preparing the ldap connection listener configuration to be able to accept connections over a secure channel.
      */
     private void configureSSL(LDAPListenerConfig ldapListenerConfig) throws GeneralSecurityException {
-        var serverKeyStorePath = Path.of(serverConfig.getKeyStorePath()).toFile().getAbsolutePath();
-        var keyManager = new KeyStoreKeyManager(serverKeyStorePath, serverConfig.getKeyStorePass().toCharArray());
-        var serverSSLUtil = new SSLUtil(keyManager, null);
+        ldapListenerConfig.setServerSocketFactory(new ConfiguredSSLServerSocketFactory(
+                getSslContext().getServerSocketFactory(), getSslProtocols(), getSslCipherSuites()));
+    }
+
+    /**
+     * TLS context with the server certificate. TLS sessions are cached, so clients can resume them
+     * with an abbreviated handshake.
+     */
+    private synchronized SSLContext getSslContext() throws GeneralSecurityException {
+        if (sslContext == null) {
+            var serverKeyStorePath = Path.of(serverConfig.getKeyStorePath()).toFile().getAbsolutePath();
+            var keyManager = new KeyStoreKeyManager(serverKeyStorePath, serverConfig.getKeyStorePass().toCharArray());
+            var serverSSLUtil = new SSLUtil(keyManager, null);
+
+            sslContext = serverSSLUtil.createSSLContext("TLSv1.3");
+            sslContext.getServerSessionContext().setSessionCacheSize(serverConfig.getSslSessionCacheSize());
+            sslContext.getServerSessionContext().setSessionTimeout(serverConfig.getSslSessionTimeoutSeconds());
+        }
+        return sslContext;
+    }
+
+    private String[] getSslProtocols() {
+        var protocols = serverConfig.getSslProtocols();
+        return protocols.isEmpty() ? null : protocols.toArray(new String[0]);
+    }
 
-        ldapListenerConfig.setServerSocketFactory(serverSSLUtil.createSSLServerSocketFactory("TLSv1.2"));
+    private String[] getSslCipherSuites() {
+        var cipherSuites = serverConfig.getSslCipherSuites();
+        return cipherSuites.isEmpty() ? null : cipherSuites.toArray(new String[0]);
+    }
+
+    @Bean
+    public AdmissionControl admissionControl() {
+        return new AdmissionControl(serverConfig.getMaxConnections(), serverConfig.getMaxConnectionsPerAddress(),
+                serverConfig.getIdleTimeoutSeconds());
     }
 
     @Bean
@@ -87,20 +194,36 @@ public class RootConfig {
         return new LdapNamingHelper(ldapConfig);
     }
 
+    @Bean
+    public KnownUsersFilter knownUsersFilter() {
+        return new KnownUsersFilter(ldapConfig.isKnownUsersFilterEnabled(),
+                ldapConfig.getKnownUsersFilterFalsePositiveProbability());
+    }
+
     @Bean
     public BindOperationProcessor bindOperationProcessor(DataStorage dataStorage) {
-        return new BindOperationProcessor(dataStorage, ldapNamingHelper());
+        return new BindOperationProcessor(dataStorage, ldapNamingHelper(), ldapConfig, knownUsersFilter());
     }
 
     @Bean
     public SearchOperationProcessor searchOperationProcessor(DataStorage dataStorage) {
-        return new SearchOperationProcessor(dataStorage, ldapNamingHelper(), ldapConfig.getSearchCacheExpirationMinutes());
+        return new SearchOperationProcessor(dataStorage, ldapNamingHelper(), ldapConfig, knownUsersFilter(),
+                storageExecutor());
     }
 
     @Bean
-    public LDAPListenerRequestHandler requestHandler(BindOperationProcessor bindOperationProcessor,
-                                                     SearchOperationProcessor searchOperationProcessor) {
-        return new UserBindAndSearchRequestHandler(bindOperationProcessor, searchOperationProcessor);
+    public UserBindAndSearchRequestHandler requestHandler(BindOperationProcessor bindOperationProcessor,
+                                                          SearchOperationProcessor searchOperationProcessor)
+            throws GeneralSecurityException {
+        SSLSocketFactory startTlsSocketFactory = null;
+        if (serverConfig.isStartTlsEnabled()) {
+            LOG.info("StartTLS is turned on...");
+            startTlsSocketFactory = new ConfiguredSSLSocketFactory(getSslContext().getSocketFactory(),
+                    getSslProtocols(), getSslCipherSuites());
+        }
+
+        return new UserBindAndSearchRequestHandler(bindOperationProcessor, searchOperationProcessor, ldapConfig,
+                admissionControl(), startTlsSocketFactory);
     }
 
 }
\ No newline at end of file
@@ -18,6 +18,8 @@ package dev.wilix.ldap.facade.server.config.properties;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.List;
+
 /**
  * TODO Enable validation.
  */
@@ -31,6 +33,32 @@ public class LdapConfigurationProperties {
     private String groupClassName;
     private String mainNameAttribute;
     private int searchCacheExpirationMinutes = 10;
+    private long bindCacheExpirationSeconds = 60;
+    private long bindCacheMaxSize = 10_000;
+    private long bindNegativeCacheExpirationSeconds = 30;
+    private long bindNegativeCacheMaxSize = 1000;
+    private int bindCacheHashIterations = 1000;
+    private long bindRatePerDnPerMinute = 0;
+    private long bindBurstPerDn = 10;
+    private long bindRatePerAddressPerMinute = 0;
+    private long bindBurstPerAddress = 100;
+    private long bindThrottlingIdleMinutes = 10;
+    private boolean knownUsersFilterEnabled = false;
+    private double knownUsersFilterFalsePositiveProbability = 0.01;
+    private int searchCacheRefreshMinutes = 0;
+    private long searchCacheMaxSizeMb = 512;
+    private List<String> indexedAttributes = List.of("uid", "mail", "cn", "entryuuid", "objectClass", "memberOf");
+    private boolean suffixIndexesEnabled = true;
+    private List<String> sortedAttributes = List.of("cn", "uid");
+    private int compiledFilterCacheSize = 1000;
+    private long searchResultsCacheMaxSizeMb = 64;
+    private int projectionsCacheSize = 16;
+    private int searchResultsCacheMaxEntriesPerResult = 10_000;
+    private long pagedSearchCursorExpirationSeconds = 300;
+    private int searchSizeLimit = 0;
+    private int searchTimeLimitSeconds = 60;
+    private long pagedSearchMaxCursorsPerConnection = 10;
+    private boolean searchPushdownEnabled = false;
 
     public String getBaseDn() {
         return baseDn;
@@ -95,4 +123,212 @@ public class LdapConfigurationProperties {
     public void setSearchCacheExpirationMinutes(int searchCacheExpirationMinutes) {
         this.searchCacheExpirationMinutes = searchCacheExpirationMinutes;
     }
+
+    public long getBindCacheExpirationSeconds() {
+        return bindCacheExpirationSeconds;
+    }
+
+    public void setBindCacheExpirationSeconds(long bindCacheExpirationSeconds) {
+        this.bindCacheExpirationSeconds = bindCacheExpirationSeconds;
+    }
+
+    public long getBindCacheMaxSize() {
+        return bindCacheMaxSize;
+    }
+
+    public void setBindCacheMaxSize(long bindCacheMaxSize) {
+        this.bindCacheMaxSize = bindCacheMaxSize;
+    }
+
+    public long getBindNegativeCacheExpirationSeconds() {
+        return bindNegativeCacheExpirationSeconds;
+    }
+
+    public void setBindNegativeCacheExpirationSeconds(long bindNegativeCacheExpirationSeconds) {
+        this.bindNegativeCacheExpirationSeconds = bindNegativeCacheExpirationSeconds;
+    }
+
+    public long getBindNegativeCacheMaxSize() {
+        return bindNegativeCacheMaxSize;
+    }
+
+    public void setBindNegativeCacheMaxSize(long bindNegativeCacheMaxSize) {
+        this.bindNegativeCacheMaxSize = bindNegativeCacheMaxSize;
+    }
+
+    public int getBindCacheHashIterations() {
+        return bindCacheHashIterations;
+    }
+
+    public void setBindCacheHashIterations(int bindCacheHashIterations) {
+        this.bindCacheHashIterations = bindCacheHashIterations;
+    }
+
+    public long getBindRatePerDnPerMinute() {
+        return bindRatePerDnPerMinute;
+    }
+
+    public void setBindRatePerDnPerMinute(long bindRatePerDnPerMinute) {
+        this.bindRatePerDnPerMinute = bindRatePerDnPerMinute;
+    }
+
+    public long getBindBurstPerDn() {
+        return bindBurstPerDn;
+    }
+
+    public void setBindBurstPerDn(long bindBurstPerDn) {
+        this.bindBurstPerDn = bindBurstPerDn;
+    }
+
+    public long getBindRatePerAddressPerMinute() {
+        return bindRatePerAddressPerMinute;
+    }
+
+    public void setBindRatePerAddressPerMinute(long bindRatePerAddressPerMinute) {
+        this.bindRatePerAddressPerMinute = bindRatePerAddressPerMinute;
+    }
+
+    public long getBindBurstPerAddress() {
+        return bindBurstPerAddress;
+    }
+
+    public void setBindBurstPerAddress(long bindBurstPerAddress) {
+        this.bindBurstPerAddress = bindBurstPerAddress;
+    }
+
+    public long getBindThrottlingIdleMinutes() {
+        return bindThrottlingIdleMinutes;
+    }
+
+    public void setBindThrottlingIdleMinutes(long bindThrottlingIdleMinutes) {
+        this.bindThrottlingIdleMinutes = bindThrottlingIdleMinutes;
+    }
+
+    public boolean isKnownUsersFilterEnabled() {
+        return knownUsersFilterEnabled;
+    }
+
+    public void setKnownUsersFilterEnabled(boolean knownUsersFilterEnabled) {
+        this.knownUsersFilterEnabled = knownUsersFilterEnabled;
+    }
+
+    public double getKnownUsersFilterFalsePositiveProbability() {
+        return knownUsersFilterFalsePositiveProbability;
+    }
+
+    public void setKnownUsersFilterFalsePositiveProbability(double knownUsersFilterFalsePositiveProbability) {
+        this.knownUsersFilterFalsePositiveProbability = knownUsersFilterFalsePositiveProbability;
+    }
+
+    public int getSearchCacheRefreshMinutes() {
+        return searchCacheRefreshMinutes;
+    }
+
+    public void setSearchCacheRefreshMinutes(int searchCacheRefreshMinutes) {
+        this.searchCacheRefreshMinutes = searchCacheRefreshMinutes;
+    }
+
+    public long getSearchCacheMaxSizeMb() {
+        return searchCacheMaxSizeMb;
+    }
+
+    public void setSearchCacheMaxSizeMb(long searchCacheMaxSizeMb) {
+        this.searchCacheMaxSizeMb = searchCacheMaxSizeMb;
+    }
+
+    public List<String> getIndexedAttributes() {
+        return indexedAttributes;
+    }
+
+    public void setIndexedAttributes(List<String> indexedAttributes) {
+        this.indexedAttributes = indexedAttributes;
+    }
+
+    public boolean isSuffixIndexesEnabled() {
+        return suffixIndexesEnabled;
+    }
+
+    public void setSuffixIndexesEnabled(boolean suffixIndexesEnabled) {
+        this.suffixIndexesEnabled = suffixIndexesEnabled;
+    }
+
+    public int getCompiledFilterCacheSize() {
+        return compiledFilterCacheSize;
+    }
+
+    public void setCompiledFilterCacheSize(int compiledFilterCacheSize) {
+        this.compiledFilterCacheSize = compiledFilterCacheSize;
+    }
+
+    public long getSearchResultsCacheMaxSizeMb() {
+        return searchResultsCacheMaxSizeMb;
+    }
+
+    public void setSearchResultsCacheMaxSizeMb(long searchResultsCacheMaxSizeMb) {
+        this.searchResultsCacheMaxSizeMb = searchResultsCacheMaxSizeMb;
+    }
+
+    public int getSearchResultsCacheMaxEntriesPerResult() {
+        return searchResultsCacheMaxEntriesPerResult;
+    }
+
+    public void setSearchResultsCacheMaxEntriesPerResult(int searchResultsCacheMaxEntriesPerResult) {
+        this.searchResultsCacheMaxEntriesPerResult = searchResultsCacheMaxEntriesPerResult;
+    }
+
+    public long getPagedSearchCursorExpirationSeconds() {
+        return pagedSearchCursorExpirationSeconds;
+    }
+
+    public void setPagedSearchCursorExpirationSeconds(long pagedSearchCursorExpirationSeconds) {
+        this.pagedSearchCursorExpirationSeconds = pagedSearchCursorExpirationSeconds;
+    }
+
+    public long getPagedSearchMaxCursorsPerConnection() {
+        return pagedSearchMaxCursorsPerConnection;
+    }
+
+    public void setPagedSearchMaxCursorsPerConnection(long pagedSearchMaxCursorsPerConnection) {
+        this.pagedSearchMaxCursorsPerConnection = pagedSearchMaxCursorsPerConnection;
+    }
+
+    public List<String> getSortedAttributes() {
+        return sortedAttributes;
+    }
+
+    public void setSortedAttributes(List<String> sortedAttributes) {
+        this.sortedAttributes = sortedAttributes;
+    }
+
+    public int getSearchSizeLimit() {
+        return searchSizeLimit;
+    }
+
+    public void setSearchSizeLimit(int searchSizeLimit) {
+        this.searchSizeLimit = searchSizeLimit;
+    }
+
+    public int getSearchTimeLimitSeconds() {
+        return searchTimeLimitSeconds;
+    }
+
+    public void setSearchTimeLimitSeconds(int searchTimeLimitSeconds) {
+        this.searchTimeLimitSeconds = searchTimeLimitSeconds;
+    }
+
+    public boolean isSearchPushdownEnabled() {
+        return searchPushdownEnabled;
+    }
+
+    public void setSearchPushdownEnabled(boolean searchPushdownEnabled) {
+        this.searchPushdownEnabled = searchPushdownEnabled;
+    }
+
+    public int getProjectionsCacheSize() {
+        return projectionsCacheSize;
+    }
+
+    public void setProjectionsCacheSize(int projectionsCacheSize) {
+        this.projectionsCacheSize = projectionsCacheSize;
+    }
 }
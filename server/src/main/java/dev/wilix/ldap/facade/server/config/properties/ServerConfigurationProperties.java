@@ -18,6 +18,8 @@ package dev.wilix.ldap.facade.server.config.properties;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.List;
+
 /**
  * TODO Enable validation.
  */
@@ -30,12 +32,73 @@ public class ServerConfigurationProperties {
      */
     private int port = 10389;
 
+    private ListenerType type = ListenerType.BLOCKING;
+
+    /**
+     * Count of event loops of the nio listener. 0 means a loop for every available processor.
+     */
+    private int eventLoopThreads = 0;
+
+    /**
+     * Count of threads, which process requests of the nio listener. Not used with virtual threads.
+     */
+    private int workerThreads = 64;
+
+    /**
+     * Maximum count of concurrent connections. Other connections are closed right after they are accepted.
+     * 0 means no limit.
+     */
+    private int maxConnections = 10_000;
+
+    /**
+     * Maximum count of concurrent connections from one client address. 0 means no limit.
+     */
+    private int maxConnectionsPerAddress = 0;
+
+    /**
+     * Connections, which send no requests for this time, are closed. 0 means no timeout.
+     */
+    private int idleTimeoutSeconds = 0;
+
+    /**
+     * Maximum count of connections, which are established by the system, but not accepted by the listener yet.
+     */
+    private int acceptBacklog = 128;
+
     private boolean sslEnabled = true;
 
     private String keyStorePath;
 
     private String keyStorePass;
 
+    /**
+     * Enabled TLS protocols. Empty list means defaults of Java.
+     */
+    private List<String> sslProtocols = List.of("TLSv1.3", "TLSv1.2");
+
+    /**
+     * Enabled cipher suites in the order of preference. Empty list means defaults of Java.
+     */
+    private List<String> sslCipherSuites = List.of();
+
+    /**
+     * Count of TLS sessions, which clients can resume without the full handshake. 0 means no limit.
+     */
+    private int sslSessionCacheSize = 10_000;
+
+    private int sslSessionTimeoutSeconds = 3600;
+
+    /**
+     * Allow upgrading plain connections to TLS by StartTLS request. Uses the same certificate, as ssl.
+     */
+    private boolean startTlsEnabled = false;
+
+    /**
+     * Handle connections and storage calls in virtual threads. Requires Java 21 or newer,
+     * platform threads are used on older versions.
+     */
+    private boolean virtualThreadsEnabled = false;
+
     public int getPort() {
         return port;
     }
@@ -44,6 +107,62 @@ public class ServerConfigurationProperties {
         this.port = port;
     }
 
+    public ListenerType getType() {
+        return type;
+    }
+
+    public void setType(ListenerType type) {
+        this.type = type;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerAddress() {
+        return maxConnectionsPerAddress;
+    }
+
+    public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    }
+
+    public int getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    public void setAcceptBacklog(int acceptBacklog) {
+        this.acceptBacklog = acceptBacklog;
+    }
+
     public boolean isSslEnabled() {
         return sslEnabled;
     }
@@ -68,4 +187,63 @@ public class ServerConfigurationProperties {
         this.keyStorePass = keyStorePass;
     }
 
+    public List<String> getSslProtocols() {
+        return sslProtocols;
+    }
+
+    public void setSslProtocols(List<String> sslProtocols) {
+        this.sslProtocols = sslProtocols;
+    }
+
+    public List<String> getSslCipherSuites() {
+        return sslCipherSuites;
+    }
+
+    public void setSslCipherSuites(List<String> sslCipherSuites) {
+        this.sslCipherSuites = sslCipherSuites;
+    }
+
+    public int getSslSessionCacheSize() {
+        return sslSessionCacheSize;
+    }
+
+    public void setSslSessionCacheSize(int sslSessionCacheSize) {
+        this.sslSessionCacheSize = sslSessionCacheSize;
+    }
+
+    public int getSslSessionTimeoutSeconds() {
+        return sslSessionTimeoutSeconds;
+    }
+
+    public void setSslSessionTimeoutSeconds(int sslSessionTimeoutSeconds) {
+        this.sslSessionTimeoutSeconds = sslSessionTimeoutSeconds;
+    }
+
+    public boolean isStartTlsEnabled() {
+        return startTlsEnabled;
+    }
+
+    public void setStartTlsEnabled(boolean startTlsEnabled) {
+        this.startTlsEnabled = startTlsEnabled;
+    }
+
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    public enum ListenerType {
+        /**
+         * Every connection is read and written by its own thread.
+         */
+        BLOCKING,
+        /**
+         * Connections are read and written by a few event loops on non-blocking sockets.
+         */
+        NIO
+    }
+
 }
\ No newline at end of file
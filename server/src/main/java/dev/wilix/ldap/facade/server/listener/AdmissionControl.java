@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits concurrent connections in total and for every client address, and sets idle timeout of admitted connections.
+ * Connections are counted by request handlers, when they are created and closed, so limits apply to any listener.
+ */
+public class AdmissionControl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private final int maxConnections;
+    private final int maxConnectionsPerAddress;
+    private final int idleTimeoutSeconds;
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLong rejectedConnections = new AtomicLong();
+    private final Map<InetAddress, Integer> connectionsByAddress = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConnections           Maximum count of connections. 0 means no limit.
+     * @param maxConnectionsPerAddress Maximum count of connections from one client address. 0 means no limit.
+     * @param idleTimeoutSeconds       Connections without requests for this time are closed. 0 means no timeout.
+     */
+    public AdmissionControl(int maxConnections, int maxConnectionsPerAddress, int idleTimeoutSeconds) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    /**
+     * Counts the new connection or rejects it, if there are too many connections.
+     * Every admitted connection must be {@link #release released}, when it is closed.
+     * The connection is not counted, if it can not be set up.
+     */
+    public void admit(ClientChannel channel) throws LDAPException {
+        InetAddress address = channel.getClientAddress();
+
+        int active = activeConnections.incrementAndGet();
+        if (maxConnections > 0 && active > maxConnections) {
+            activeConnections.decrementAndGet();
+            throw reject(address, "Too many connections.");
+        }
+
+        if (maxConnectionsPerAddress > 0
+                && connectionsByAddress.merge(address, 1, Integer::sum) > maxConnectionsPerAddress) {
+            releaseAddress(address);
+            activeConnections.decrementAndGet();
+            throw reject(address, "Too many connections from the client address.");
+        }
+
+        if (idleTimeoutSeconds > 0) {
+            try {
+                channel.setIdleTimeout(idleTimeoutSeconds);
+            } catch (LDAPException | RuntimeException e) {
+                release(channel);
+                throw e;
+            }
+        }
+    }
+
+    public void release(ClientChannel channel) {
+        if (maxConnectionsPerAddress > 0) {
+            releaseAddress(channel.getClientAddress());
+        }
+        activeConnections.decrementAndGet();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public long getRejectedConnections() {
+        return rejectedConnections.get();
+    }
+
+    private void releaseAddress(InetAddress address) {
+        connectionsByAddress.computeIfPresent(address, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private LDAPException reject(InetAddress address, String message) {
+        long rejected = rejectedConnections.incrementAndGet();
+        LOG.debug("Connection from {} is rejected: {} Active connections: {}, rejected connections: {}.",
+                address, message, activeConnections.get(), rejected);
+        return new LDAPException(ResultCode.BUSY, message);
+    }
+
+}
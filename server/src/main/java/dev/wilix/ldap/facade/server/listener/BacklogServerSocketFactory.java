@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import javax.net.ServerSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+/**
+ * Creates server sockets with the given accept backlog. UnboundID listener always asks for the backlog of 128.
+ */
+public class BacklogServerSocketFactory extends ServerSocketFactory {
+
+    private final ServerSocketFactory delegate;
+    private final int backlog;
+
+    public BacklogServerSocketFactory(ServerSocketFactory delegate, int backlog) {
+        this.delegate = delegate;
+        this.backlog = backlog;
+    }
+
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+        return delegate.createServerSocket();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return delegate.createServerSocket(port, backlog);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+        return delegate.createServerSocket(port, this.backlog);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+        return delegate.createServerSocket(port, this.backlog, address);
+    }
+
+}
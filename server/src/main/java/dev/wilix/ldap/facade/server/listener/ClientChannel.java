@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.asn1.ASN1Buffer;
+import com.unboundid.ldap.listener.LDAPListenerClientConnection;
+import com.unboundid.ldap.protocol.LDAPMessage;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.SocketException;
+
+/**
+ * Client connection, as it is seen by request handlers. It hides, which listener accepted the connection.
+ */
+public interface ClientChannel {
+
+    InetAddress getClientAddress();
+
+    void sendSearchResultEntry(int messageID, Entry entry) throws LDAPException;
+
+    /**
+     * The connection is closed, if the client sends nothing for this time.
+     */
+    void setIdleTimeout(int seconds) throws LDAPException;
+
+    /**
+     * Sends the response to StartTLS request in clear text and reads next requests over TLS.
+     *
+     * @throws LDAPException If TLS is already established or the listener does not support StartTLS.
+     */
+    void startTls(SSLSocketFactory socketFactory, LDAPMessage response) throws LDAPException;
+
+    static ClientChannel of(LDAPListenerClientConnection connection) {
+        return new ClientChannel() {
+            @Override
+            public InetAddress getClientAddress() {
+                return connection.getSocket().getInetAddress();
+            }
+
+            @Override
+            public void sendSearchResultEntry(int messageID, Entry entry) throws LDAPException {
+                connection.sendSearchResultEntry(messageID, entry);
+            }
+
+            @Override
+            public void setIdleTimeout(int seconds) throws LDAPException {
+                // The connection thread is blocked in reading, while the client is idle. Timed out reading closes it.
+                try {
+                    connection.getSocket().setSoTimeout(seconds * 1000);
+                } catch (SocketException e) {
+                    throw new LDAPException(ResultCode.LOCAL_ERROR, "Can't set idle timeout.", e);
+                }
+            }
+
+            @Override
+            public void startTls(SSLSocketFactory socketFactory, LDAPMessage response) throws LDAPException {
+                if (connection.getSocket() instanceof SSLSocket) {
+                    throw new LDAPException(ResultCode.OPERATIONS_ERROR, "TLS is already established.");
+                }
+
+                // The connection does not send the response after the conversion, so it is written here.
+                OutputStream clearOutputStream = connection.convertToTLS(socketFactory);
+                var buffer = new ASN1Buffer();
+                response.writeTo(buffer);
+                try {
+                    buffer.writeTo(clearOutputStream);
+                    clearOutputStream.flush();
+                } catch (IOException e) {
+                    throw new LDAPException(ResultCode.SERVER_DOWN, "Can't send StartTLS response.", e);
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLServerSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+/**
+ * Creates server sockets with the given TLS protocols and cipher suites.
+ * The order of cipher suites is the preference of the server.
+ */
+public class ConfiguredSSLServerSocketFactory extends SSLServerSocketFactory {
+
+    private final SSLServerSocketFactory delegate;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+
+    /**
+     * @param protocols    Enabled protocols. Null means defaults of the SSL context.
+     * @param cipherSuites Enabled cipher suites. Null means defaults of the SSL context.
+     */
+    public ConfiguredSSLServerSocketFactory(SSLServerSocketFactory delegate, String[] protocols, String[] cipherSuites) {
+        this.delegate = delegate;
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+    }
+
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+        return configure(delegate.createServerSocket());
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return configure(delegate.createServerSocket(port));
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+        return configure(delegate.createServerSocket(port, backlog));
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+        return configure(delegate.createServerSocket(port, backlog, address));
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return cipherSuites != null ? cipherSuites.clone() : delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    private ServerSocket configure(ServerSocket socket) {
+        SSLServerSocket sslSocket = (SSLServerSocket) socket;
+        SSLParameters parameters = sslSocket.getSSLParameters();
+        if (protocols != null) {
+            parameters.setProtocols(protocols);
+        }
+        if (cipherSuites != null) {
+            parameters.setCipherSuites(cipherSuites);
+            parameters.setUseCipherSuitesOrder(true);
+        }
+        sslSocket.setSSLParameters(parameters);
+        return sslSocket;
+    }
+
+}
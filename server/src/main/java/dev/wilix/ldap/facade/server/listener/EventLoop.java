@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread, which waits for readiness of its connections and reads and writes them.
+ * Other threads interact with connections of the loop only through its tasks.
+ */
+class EventLoop implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventLoop.class);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = 1000;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Executor requestExecutor;
+    private final int maxMessageSize;
+    private final Thread thread;
+
+    // Shared by all connections of the loop. Only incomplete requests are copied out of it.
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private volatile boolean running = true;
+
+    EventLoop(String name, Executor requestExecutor, int maxMessageSize) throws IOException {
+        this.selector = Selector.open();
+        this.requestExecutor = requestExecutor;
+        this.maxMessageSize = maxMessageSize > 0 ? maxMessageSize : Integer.MAX_VALUE;
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void register(SocketChannel channel, RequestHandlerFactory handlerFactory) {
+        execute(() -> {
+            try {
+                var connection = new NioConnection(this, channel, handlerFactory);
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (LDAPException e) {
+                LOG.debug("Connection is not accepted: {}", e.getMessage());
+                closeQuietly(channel);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Can't register connection.", e);
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    /**
+     * Runs the task in the loop thread.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void shutDown() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    Executor getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    @Override
+    public void run() {
+        long lastIdleCheck = System.nanoTime();
+        while (running) {
+            try {
+                selector.select(IDLE_CHECK_INTERVAL_MILLIS);
+            } catch (IOException e) {
+                LOG.error("Event loop can't wait for connections.", e);
+                break;
+            }
+
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (CancelledKeyException e) {
+                    LOG.trace("Task of closed connection is skipped.");
+                } catch (RuntimeException e) {
+                    LOG.warn("Event loop task failed.", e);
+                }
+            }
+
+            for (SelectionKey key : selector.selectedKeys()) {
+                var connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.read(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                } catch (CancelledKeyException e) {
+                    connection.close();
+                }
+            }
+            selector.selectedKeys().clear();
+
+            long now = System.nanoTime();
+            if (now - lastIdleCheck >= TimeUnit.MILLISECONDS.toNanos(IDLE_CHECK_INTERVAL_MILLIS)) {
+                lastIdleCheck = now;
+                for (SelectionKey key : selector.keys()) {
+                    ((NioConnection) key.attachment()).closeIfIdle(now);
+                }
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            ((NioConnection) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.debug("Can't close selector.", e);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Can't close channel.", e);
+        }
+    }
+
+}
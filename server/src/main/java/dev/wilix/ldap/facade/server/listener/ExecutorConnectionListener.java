@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.listener.LDAPListenerClientConnection;
+import com.unboundid.ldap.listener.LDAPListenerConfig;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Listener, which handles connections by the given executor instead of starting a thread for every connection.
+ * With an executor of virtual threads, idle connections and connections waiting for the storage
+ * do not hold platform threads with their stacks.
+ * <p>
+ * Connections are processed by {@link LDAPListenerClientConnection} of UnboundID SDK, so requests are
+ * read and answered the same way, as by {@link ThreadPerConnectionListener}.
+ * Its thread is never started, the read loop is run by the executor.
+ */
+public class ExecutorConnectionListener implements ConnectionListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutorConnectionListener.class);
+
+    // The same as UnboundID listener uses. The configured backlog is set by the socket factory.
+    private static final int DEFAULT_BACKLOG = 128;
+
+    private final LDAPListenerConfig config;
+    private final ExecutorService connectionExecutor;
+    private final Set<LDAPListenerClientConnection> connections = ConcurrentHashMap.newKeySet();
+
+    private volatile ServerSocket serverSocket;
+    private Thread acceptThread;
+
+    public ExecutorConnectionListener(LDAPListenerConfig config, ExecutorService connectionExecutor) {
+        this.config = config;
+        this.connectionExecutor = connectionExecutor;
+    }
+
+    @Override
+    public synchronized void startListening() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Listener is already started.");
+        }
+
+        var socket = config.getServerSocketFactory().createServerSocket(config.getListenPort(), DEFAULT_BACKLOG,
+                config.getListenAddress());
+        if (config.getReceiveBufferSize() > 0) {
+            socket.setReceiveBufferSize(config.getReceiveBufferSize());
+        }
+        serverSocket = socket;
+
+        acceptThread = new Thread(this::acceptConnections, "ldap-listener-" + socket.getLocalPort());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    @Override
+    public int getListenPort() {
+        var socket = serverSocket;
+        return socket == null ? -1 : socket.getLocalPort();
+    }
+
+    @Override
+    public synchronized void shutDown(boolean closeExistingConnections) {
+        var socket = serverSocket;
+        if (socket == null) {
+            return;
+        }
+        serverSocket = null;
+
+        try {
+            socket.close();
+            acceptThread.join();
+        } catch (IOException e) {
+            LOG.warn("Can't close listener socket.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (closeExistingConnections) {
+            for (LDAPListenerClientConnection connection : connections) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    LOG.debug("Can't close connection {}.", connection.getConnectionID(), e);
+                }
+            }
+            connectionExecutor.shutdown();
+        }
+    }
+
+    private void acceptConnections() {
+        var socket = serverSocket;
+        while (serverSocket == socket) {
+            Socket clientSocket;
+            try {
+                clientSocket = socket.accept();
+            } catch (IOException e) {
+                if (serverSocket == socket) {
+                    LOG.warn("Can't accept connection.", e);
+                    continue;
+                }
+                return;
+            }
+
+            try {
+                connectionExecutor.execute(() -> handleConnection(clientSocket));
+            } catch (RuntimeException e) {
+                LOG.warn("Can't handle connection from {}.", clientSocket.getRemoteSocketAddress(), e);
+                closeQuietly(clientSocket);
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        LDAPListenerClientConnection connection;
+        try {
+            configureSocket(socket);
+            // Without the listener, the connection does not apply options of its configuration, so they are set above.
+            connection = new LDAPListenerClientConnection(null, socket, config.getRequestHandler(),
+                    config.getExceptionHandler());
+        } catch (LDAPException | SocketException e) {
+            LOG.debug("Can't create connection for {}.", socket.getRemoteSocketAddress(), e);
+            closeQuietly(socket);
+            return;
+        }
+
+        connections.add(connection);
+        try {
+            connection.run();
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private void configureSocket(Socket socket) throws SocketException {
+        socket.setKeepAlive(config.useKeepAlive());
+        socket.setTcpNoDelay(config.useTCPNoDelay());
+        if (config.useLinger()) {
+            socket.setSoLinger(true, config.getLingerTimeoutSeconds());
+        }
+        if (config.getSendBufferSize() > 0) {
+            socket.setSendBufferSize(config.getSendBufferSize());
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOG.debug("Can't close socket.", e);
+        }
+    }
+
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.asn1.ASN1Buffer;
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Exception;
+import com.unboundid.ldap.listener.LDAPListenerRequestHandler;
+import com.unboundid.ldap.protocol.*;
+import com.unboundid.ldap.sdk.Control;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection of {@link NioConnectionListener}.
+ * <p>
+ * Requests are read by the event loop and processed one by one by the request executor, like UnboundID listener
+ * does it in the connection thread. Responses are collected in a buffer and passed to the event loop in batches,
+ * so a search with many entries does not wake the loop for every entry.
+ * <p>
+ * When a slow client does not read its responses, processing of its next requests is suspended until they are written.
+ * A request, that produces too many responses itself (like a search of all entries), waits for the client in the middle,
+ * so responses held in memory stay bounded.
+ */
+class NioConnection implements ClientChannel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioConnection.class);
+
+    // LDAPMessage is a universal sequence.
+    private static final byte MESSAGE_TAG = 0x30;
+    // Responses are passed to the event loop, when this much is collected, or when the request is processed.
+    private static final int RESPONSE_BATCH_SIZE = 32 * 1024;
+    // Next requests are not processed and the current one waits, while so much is not written to the slow client yet.
+    private static final int MAX_PENDING_RESPONSES_SIZE = 1024 * 1024;
+    // How often the waiting request checks, that the client reads anything at all.
+    private static final long CLIENT_WAIT_CHECK_MILLIS = 1000;
+    // Requests are not read, while so many of them are waiting for processing.
+    private static final int MAX_PENDING_REQUESTS = 32;
+    // Capacity, which a response buffer keeps after a large response.
+    private static final int MAX_KEPT_RESPONSE_BUFFER_SIZE = 2 * RESPONSE_BATCH_SIZE;
+
+    // Requests are processed by a few executor threads, so response buffers are bound to threads, not connections.
+    private static final ThreadLocal<ASN1Buffer> RESPONSE_BUFFERS =
+            ThreadLocal.withInitial(() -> new ASN1Buffer(MAX_KEPT_RESPONSE_BUFFER_SIZE));
+
+    private final EventLoop eventLoop;
+    private final SocketChannel channel;
+    private final InetAddress clientAddress;
+    private final LDAPListenerRequestHandler handler;
+    private SelectionKey key;
+
+    private volatile long idleTimeoutNanos;
+    private volatile long lastActivityNanos = System.nanoTime();
+
+    // Beginning of the request, which is not read completely, ready for appending. Used only by the event loop.
+    private ByteBuffer incompleteRequest;
+
+    // Guarded by this.
+    private final Queue<LDAPMessage> requests = new ArrayDeque<>();
+    private boolean processing;
+    private boolean readingSuspended;
+
+    // Guarded by responses.
+    private final Queue<ByteBuffer> responses = new ArrayDeque<>();
+    private long pendingResponsesSize;
+    private boolean writeScheduled;
+    private boolean processingSuspended;
+    private boolean closed;
+
+    NioConnection(EventLoop eventLoop, SocketChannel channel, RequestHandlerFactory handlerFactory)
+            throws IOException, LDAPException {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.clientAddress = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        this.handler = handlerFactory.newInstance(this);
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Override
+    public InetAddress getClientAddress() {
+        return clientAddress;
+    }
+
+    @Override
+    public void sendSearchResultEntry(int messageID, Entry entry) throws LDAPException {
+        send(new LDAPMessage(messageID, new SearchResultEntryProtocolOp(entry)));
+    }
+
+    @Override
+    public void setIdleTimeout(int seconds) {
+        idleTimeoutNanos = TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    @Override
+    public void startTls(SSLSocketFactory socketFactory, LDAPMessage response) throws LDAPException {
+        throw new LDAPException(ResultCode.UNWILLING_TO_PERFORM, "StartTLS is not supported by nio listener.");
+    }
+
+    /**
+     * Closes the connection, if the client sends nothing for the idle timeout, and it has no requests in progress.
+     * Called by the event loop.
+     */
+    void closeIfIdle(long now) {
+        if (idleTimeoutNanos == 0 || now - lastActivityNanos < idleTimeoutNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (processing) {
+                return;
+            }
+        }
+        synchronized (responses) {
+            if ( ! responses.isEmpty()) {
+                return;
+            }
+        }
+
+        LOG.debug("Connection from {} is closed, because it is idle.", clientAddress);
+        close();
+    }
+
+    /**
+     * Reads available data and queues complete requests. Called by the event loop.
+     */
+    void read(ByteBuffer readBuffer) {
+        ByteBuffer data;
+        try {
+            readBuffer.clear();
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            lastActivityNanos = System.nanoTime();
+
+            if (incompleteRequest == null) {
+                data = readBuffer;
+            } else {
+                data = append(incompleteRequest, readBuffer).flip();
+            }
+
+            int requestLength;
+            while ((requestLength = getRequestLength(data)) > 0 && data.remaining() >= requestLength) {
+                byte[] request = new byte[requestLength];
+                data.get(request);
+                enqueue(LDAPMessage.decode(ASN1Element.decode(request)));
+            }
+        } catch (IOException | ASN1Exception | LDAPException e) {
+            LOG.debug("Connection from {} is closed, because it can't be read.", clientAddress, e);
+            close();
+            return;
+        }
+
+        if ( ! data.hasRemaining()) {
+            incompleteRequest = null;
+        } else if (data == readBuffer) {
+            incompleteRequest = ByteBuffer.allocate(2 * data.remaining()).put(data);
+        } else {
+            incompleteRequest = data.compact();
+        }
+    }
+
+    /**
+     * Appends the data to the buffer, which grows twice, when it is full, so a large request is copied only a few times.
+     *
+     * @return The buffer or a larger one with the same content.
+     */
+    private static ByteBuffer append(ByteBuffer buffer, ByteBuffer data) {
+        if (buffer.remaining() < data.remaining()) {
+            int capacity = Math.max(2 * buffer.capacity(), buffer.position() + data.remaining());
+            buffer = ByteBuffer.allocate(capacity).put(buffer.flip());
+        }
+        return buffer.put(data);
+    }
+
+    /**
+     * Writes as much of the responses, as the socket accepts. Called by the event loop.
+     */
+    void write() {
+        synchronized (responses) {
+            if (closed) {
+                return;
+            }
+            try {
+                channel.write(responses.toArray(new ByteBuffer[0]));
+            } catch (IOException e) {
+                LOG.debug("Connection from {} is closed, because it can't be written.", clientAddress, e);
+                responses.clear();
+                close();
+                return;
+            }
+
+            while ( ! responses.isEmpty() && ! responses.peek().hasRemaining()) {
+                pendingResponsesSize -= responses.poll().capacity();
+            }
+            responses.notifyAll();
+
+            if (processingSuspended && pendingResponsesSize <= MAX_PENDING_RESPONSES_SIZE / 2) {
+                processingSuspended = false;
+                eventLoop.getRequestExecutor().execute(this::processRequests);
+            }
+
+            if (responses.isEmpty()) {
+                writeScheduled = false;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    void close() {
+        synchronized (responses) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            responses.notifyAll();
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Can't close connection from {}.", clientAddress, e);
+        }
+        handler.closeInstance();
+    }
+
+    /**
+     * @return Length of the request at the beginning of the data or -1, if the data is too short to know it.
+     */
+    private int getRequestLength(ByteBuffer data) throws IOException {
+        int position = data.position();
+        if (data.remaining() < 2) {
+            return -1;
+        }
+        if (data.get(position) != MESSAGE_TAG) {
+            throw new IOException("Request is not an LDAP message.");
+        }
+
+        int firstLengthByte = data.get(position + 1) & 0xFF;
+        if ((firstLengthByte & 0x80) == 0) {
+            return 2 + firstLengthByte;
+        }
+
+        int lengthBytes = firstLengthByte & 0x7F;
+        if (lengthBytes == 0 || lengthBytes > 4) {
+            throw new IOException("Unsupported length of LDAP message.");
+        }
+        if (data.remaining() < 2 + lengthBytes) {
+            return -1;
+        }
+        long length = 0;
+        for (int i = 0; i < lengthBytes; i++) {
+            length = (length << 8) | (data.get(position + 2 + i) & 0xFF);
+        }
+        if (length > eventLoop.getMaxMessageSize() - 2 - lengthBytes) {
+            throw new IOException("LDAP message of " + length + " bytes is too large.");
+        }
+        return (int) (2 + lengthBytes + length);
+    }
+
+    private void enqueue(LDAPMessage request) {
+        synchronized (this) {
+            requests.add(request);
+            if (requests.size() >= MAX_PENDING_REQUESTS && ! readingSuspended) {
+                readingSuspended = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            if (processing) {
+                return;
+            }
+            processing = true;
+        }
+        eventLoop.getRequestExecutor().execute(this::processRequests);
+    }
+
+    private void processRequests() {
+        while (true) {
+            if (suspendProcessing()) {
+                return;
+            }
+
+            LDAPMessage request;
+            synchronized (this) {
+                request = requests.poll();
+                if (request == null) {
+                    processing = false;
+                    lastActivityNanos = System.nanoTime();
+                    return;
+                }
+                if (readingSuspended && requests.size() < MAX_PENDING_REQUESTS / 2) {
+                    readingSuspended = false;
+                    eventLoop.execute(this::resumeReading);
+                }
+            }
+
+            try {
+                LDAPMessage response = process(request);
+                if (response != null) {
+                    send(response);
+                }
+                flushResponses(false);
+            } catch (LDAPException e) {
+                // The connection is closed. Left requests are dropped.
+                RESPONSE_BUFFERS.get().clear();
+                synchronized (this) {
+                    requests.clear();
+                    processing = false;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Suspends processing, while the client does not read responses. It is resumed, when they are written.
+     * Requests keep being queued meanwhile, until reading is suspended too.
+     *
+     * @return True, if processing is suspended.
+     */
+    private boolean suspendProcessing() {
+        synchronized (responses) {
+            if (pendingResponsesSize > MAX_PENDING_RESPONSES_SIZE && ! closed) {
+                processingSuspended = true;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private void resumeReading() {
+        if (key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Passes the request to the handler, like UnboundID listener does it.
+     * Errors of the handler are returned to the client as a result with the code "other".
+     *
+     * @return Response to send or null, if the request has no response.
+     */
+    private LDAPMessage process(LDAPMessage request) {
+        int messageID = request.getMessageID();
+        List<Control> controls = request.getControls();
+        byte type = request.getProtocolOpType();
+
+        try {
+            switch (type) {
+                case LDAPMessage.PROTOCOL_OP_TYPE_UNBIND_REQUEST:
+                    close();
+                    return null;
+                case LDAPMessage.PROTOCOL_OP_TYPE_ABANDON_REQUEST:
+                    handler.processAbandonRequest(messageID, request.getAbandonRequestProtocolOp(), controls);
+                    return null;
+                case LDAPMessage.PROTOCOL_OP_TYPE_BIND_REQUEST:
+                    return handler.processBindRequest(messageID, request.getBindRequestProtocolOp(), controls);
+                case LDAPMessage.PROTOCOL_OP_TYPE_SEARCH_REQUEST:
+                    return handler.processSearchRequest(messageID, request.getSearchRequestProtocolOp(), controls);
+                case LDAPMessage.PROTOCOL_OP_TYPE_ADD_REQUEST:
+                    return handler.processAddRequest(messageID, request.getAddRequestProtocolOp(), controls);
+                case LDAPMessage.PROTOCOL_OP_TYPE_COMPARE_REQUEST:
+                    return handler.processCompareRequest(messageID, request.getCompareRequestProtocolOp(), controls);
+                case LDAPMessage.PROTOCOL_OP_TYPE_DELETE_REQUEST:
+                    return handler.processDeleteRequest(messageID, request.getDeleteRequestProtocolOp(), controls);
+                case LDAPMessage.PROTOCOL_OP_TYPE_EXTENDED_REQUEST:
+                    return handler.processExtendedRequest(messageID, request.getExtendedRequestProtocolOp(), controls);
+                case LDAPMessage.PROTOCOL_OP_TYPE_MODIFY_REQUEST:
+                    return handler.processModifyRequest(messageID, request.getModifyRequestProtocolOp(), controls);
+                case LDAPMessage.PROTOCOL_OP_TYPE_MODIFY_DN_REQUEST:
+                    return handler.processModifyDNRequest(messageID, request.getModifyDNRequestProtocolOp(), controls);
+                default:
+                    LOG.debug("Connection from {} is closed, because of unknown request {}.", clientAddress, request);
+                    close();
+                    return null;
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Request [{}] interrupted with not expected error: {}", request, e);
+            return errorResponse(messageID, type, "Request handler failed: " + e.getMessage());
+        }
+    }
+
+    private static LDAPMessage errorResponse(int messageID, byte requestType, String message) {
+        int resultCode = ResultCode.OTHER_INT_VALUE;
+        switch (requestType) {
+            case LDAPMessage.PROTOCOL_OP_TYPE_BIND_REQUEST:
+                return new LDAPMessage(messageID, new BindResponseProtocolOp(resultCode, null, message, null, null));
+            case LDAPMessage.PROTOCOL_OP_TYPE_SEARCH_REQUEST:
+                return new LDAPMessage(messageID, new SearchResultDoneProtocolOp(resultCode, null, message, null));
+            case LDAPMessage.PROTOCOL_OP_TYPE_ADD_REQUEST:
+                return new LDAPMessage(messageID, new AddResponseProtocolOp(resultCode, null, message, null));
+            case LDAPMessage.PROTOCOL_OP_TYPE_COMPARE_REQUEST:
+                return new LDAPMessage(messageID, new CompareResponseProtocolOp(resultCode, null, message, null));
+            case LDAPMessage.PROTOCOL_OP_TYPE_DELETE_REQUEST:
+                return new LDAPMessage(messageID, new DeleteResponseProtocolOp(resultCode, null, message, null));
+            case LDAPMessage.PROTOCOL_OP_TYPE_MODIFY_REQUEST:
+                return new LDAPMessage(messageID, new ModifyResponseProtocolOp(resultCode, null, message, null));
+            case LDAPMessage.PROTOCOL_OP_TYPE_MODIFY_DN_REQUEST:
+                return new LDAPMessage(messageID, new ModifyDNResponseProtocolOp(resultCode, null, message, null));
+            case LDAPMessage.PROTOCOL_OP_TYPE_EXTENDED_REQUEST:
+                return new LDAPMessage(messageID,
+                        new ExtendedResponseProtocolOp(resultCode, null, message, null, null, null));
+            default:
+                return null;
+        }
+    }
+
+    private void send(LDAPMessage message) throws LDAPException {
+        ASN1Buffer responseBuffer = RESPONSE_BUFFERS.get();
+        message.writeTo(responseBuffer);
+        if (responseBuffer.length() >= RESPONSE_BATCH_SIZE) {
+            flushResponses(true);
+        }
+    }
+
+    /**
+     * Passes collected responses to the event loop.
+     *
+     * @param waitForClient Wait, while the client is too slow to read previous responses. Requests wait in the middle
+     *                      only, at the end processing of next requests is suspended instead.
+     */
+    private void flushResponses(boolean waitForClient) throws LDAPException {
+        ASN1Buffer responseBuffer = RESPONSE_BUFFERS.get();
+        if (responseBuffer.length() == 0) {
+            return;
+        }
+        var batch = ByteBuffer.wrap(responseBuffer.toByteArray());
+        responseBuffer.clear();
+
+        boolean scheduleWrite;
+        synchronized (responses) {
+            if (waitForClient && ! awaitClient()) {
+                LOG.debug("Connection from {} is closed, because the client does not read responses.", clientAddress);
+                closed = true;
+            }
+            if (closed) {
+                throw new LDAPException(ResultCode.SERVER_DOWN, "Connection is closed.");
+            }
+
+            responses.add(batch);
+            pendingResponsesSize += batch.capacity();
+            scheduleWrite = ! writeScheduled;
+            writeScheduled = true;
+        }
+
+        if (scheduleWrite) {
+            eventLoop.execute(this::write);
+        }
+    }
+
+    /**
+     * Waits, while too many responses are pending. Called holding the lock of responses.
+     *
+     * @return False, if the client has read nothing for the idle timeout.
+     */
+    private boolean awaitClient() throws LDAPException {
+        long lastProgressNanos = System.nanoTime();
+        long lastPendingSize = pendingResponsesSize;
+        while (pendingResponsesSize > MAX_PENDING_RESPONSES_SIZE && ! closed) {
+            try {
+                responses.wait(CLIENT_WAIT_CHECK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LDAPException(ResultCode.LOCAL_ERROR, "Interrupted while waiting for the client.", e);
+            }
+
+            long now = System.nanoTime();
+            if (pendingResponsesSize != lastPendingSize) {
+                lastPendingSize = pendingResponsesSize;
+                lastProgressNanos = now;
+            } else if (idleTimeoutNanos > 0 && now - lastProgressNanos >= idleTimeoutNanos) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
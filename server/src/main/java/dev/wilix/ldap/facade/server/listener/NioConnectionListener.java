@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.listener.LDAPListenerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Listener on non-blocking sockets. Connections are spread over a few event loops, which read requests
+ * and write responses. Requests are processed by the request executor, so event loops never wait for the storage.
+ * <p>
+ * An idle connection holds no thread and no buffer, so a lot of mostly idle connections are cheap.
+ * Secure connections are not supported.
+ */
+public class NioConnectionListener implements ConnectionListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioConnectionListener.class);
+
+    // Accepting is retried after a growing pause, when it fails, e.g. because there are no free file descriptors.
+    private static final long MIN_ACCEPT_RETRY_MILLIS = 10;
+    private static final long MAX_ACCEPT_RETRY_MILLIS = 1000;
+
+    private final LDAPListenerConfig config;
+    private final RequestHandlerFactory handlerFactory;
+    private final int backlog;
+    private final ExecutorService requestExecutor;
+    private final EventLoop[] eventLoops;
+
+    private volatile ServerSocketChannel serverChannel;
+    private Thread acceptThread;
+    private int nextEventLoop;
+
+    /**
+     * @param config         Listen address and port, socket options and the maximum size of requests.
+     *                       The request handler of the configuration is not used.
+     * @param handlerFactory Creates a request handler for every accepted connection.
+     * @param eventLoopCount Count of event loops. 0 means a loop for every available processor.
+     * @param backlog        Maximum count of connections, which are not accepted yet.
+     */
+    public NioConnectionListener(LDAPListenerConfig config, RequestHandlerFactory handlerFactory,
+                                 int eventLoopCount, int backlog, ExecutorService requestExecutor) {
+        this.config = config;
+        this.handlerFactory = handlerFactory;
+        this.backlog = backlog;
+        this.requestExecutor = requestExecutor;
+        this.eventLoops = new EventLoop[eventLoopCount > 0 ? eventLoopCount : Runtime.getRuntime().availableProcessors()];
+    }
+
+    @Override
+    public synchronized void startListening() throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("Listener is already started.");
+        }
+
+        var channel = ServerSocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, config.useReuseAddress());
+            if (config.getReceiveBufferSize() > 0) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+            }
+            channel.bind(new InetSocketAddress(config.getListenAddress(), config.getListenPort()), backlog);
+
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new EventLoop("ldap-event-loop-" + i, requestExecutor, config.getMaxMessageSizeBytes());
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        serverChannel = channel;
+
+        acceptThread = new Thread(this::acceptConnections, "ldap-listener-" + getListenPort());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    @Override
+    public int getListenPort() {
+        var channel = serverChannel;
+        return channel == null ? -1 : channel.socket().getLocalPort();
+    }
+
+    @Override
+    public synchronized void shutDown(boolean closeExistingConnections) {
+        var channel = serverChannel;
+        if (channel == null) {
+            return;
+        }
+        serverChannel = null;
+
+        try {
+            channel.close();
+            acceptThread.join();
+        } catch (IOException e) {
+            LOG.warn("Can't close listener channel.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (closeExistingConnections) {
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.shutDown();
+            }
+            requestExecutor.shutdown();
+        }
+    }
+
+    private void acceptConnections() {
+        var channel = serverChannel;
+        long retryMillis = 0;
+        while (serverChannel == channel) {
+            SocketChannel clientChannel;
+            try {
+                clientChannel = channel.accept();
+                retryMillis = 0;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                retryMillis = Math.min(Math.max(2 * retryMillis, MIN_ACCEPT_RETRY_MILLIS), MAX_ACCEPT_RETRY_MILLIS);
+                LOG.warn("Can't accept connection. Next try in {} ms.", retryMillis, e);
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                configureChannel(clientChannel);
+                var eventLoop = eventLoops[nextEventLoop];
+                nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                eventLoop.register(clientChannel, handlerFactory);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Can't handle connection.", e);
+                try {
+                    clientChannel.close();
+                } catch (IOException closeException) {
+                    LOG.debug("Can't close channel.", closeException);
+                }
+            }
+        }
+    }
+
+    private void configureChannel(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, config.useKeepAlive());
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, config.useTCPNoDelay());
+        if (config.useLinger()) {
+            channel.setOption(StandardSocketOptions.SO_LINGER, config.getLingerTimeoutSeconds());
+        }
+        if (config.getSendBufferSize() > 0) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+        }
+    }
+
+}
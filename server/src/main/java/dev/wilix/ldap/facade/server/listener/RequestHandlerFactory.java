@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.listener.LDAPListenerRequestHandler;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * Creates a request handler for every connection of a listener, which is not made by UnboundID SDK.
+ */
+@FunctionalInterface
+public interface RequestHandlerFactory {
+
+    /**
+     * @throws LDAPException If the connection is not accepted. It is closed then.
+     */
+    LDAPListenerRequestHandler newInstance(ClientChannel channel) throws LDAPException;
+
+}
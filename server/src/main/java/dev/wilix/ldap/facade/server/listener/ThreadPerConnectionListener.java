@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.listener.LDAPListener;
+import com.unboundid.ldap.listener.LDAPListenerConfig;
+
+import java.io.IOException;
+
+/**
+ * Listener of UnboundID SDK, which handles every connection in its own platform thread.
+ */
+public class ThreadPerConnectionListener implements ConnectionListener {
+
+    private final LDAPListener listener;
+
+    public ThreadPerConnectionListener(LDAPListenerConfig config) {
+        this.listener = new LDAPListener(config);
+    }
+
+    @Override
+    public void startListening() throws IOException {
+        listener.startListening();
+    }
+
+    @Override
+    public int getListenPort() {
+        return listener.getListenPort();
+    }
+
+    @Override
+    public void shutDown(boolean closeExistingConnections) {
+        listener.shutDown(closeExistingConnections);
+    }
+
+}
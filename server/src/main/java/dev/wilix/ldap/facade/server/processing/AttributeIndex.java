@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of normalized attribute values to positions of entries in the snapshot.
+ * Values are hashed for equality lookups and sorted for prefix lookups.
+ * Optionally values are also sorted in reversed form for suffix lookups.
+ */
+final class AttributeIndex {
+
+    private static final int[] EMPTY_POSITIONS = new int[0];
+
+    private final String attributeName;
+    private final Map<String, int[]> positionsByValue;
+    private final BitSet presence;
+
+    // Distinct values in the natural order.
+    private final String[] sortedValues;
+    // Distinct reversed values in the natural order, or null if suffix index is disabled.
+    private final String[] sortedReversedValues;
+
+    private AttributeIndex(String attributeName, Map<String, int[]> positionsByValue, BitSet presence,
+                           String[] sortedValues, String[] sortedReversedValues) {
+        this.attributeName = attributeName;
+        this.positionsByValue = positionsByValue;
+        this.presence = presence;
+        this.sortedValues = sortedValues;
+        this.sortedReversedValues = sortedReversedValues;
+    }
+
+    static AttributeIndex build(String attributeName, NormalizedEntries normalizedEntries, int entriesCount,
+                                boolean withSuffixIndex) {
+        Map<String, PositionsBuilder> builders = new HashMap<>();
+        BitSet presence = new BitSet(entriesCount);
+
+        int slot = normalizedEntries.getSlot(attributeName);
+        for (int position = 0; slot >= 0 && position < entriesCount; position++) {
+            String[] values = normalizedEntries.getValues(position, slot);
+            if (values == null) {
+                continue;
+            }
+
+            presence.set(position);
+            for (String value : values) {
+                builders.computeIfAbsent(value, s -> new PositionsBuilder()).add(position);
+            }
+        }
+
+        Map<String, int[]> positionsByValue = new HashMap<>(builders.size() * 4 / 3 + 1);
+        builders.forEach((value, builder) -> positionsByValue.put(value, builder.build()));
+
+        String[] sortedValues = positionsByValue.keySet().toArray(new String[0]);
+        Arrays.sort(sortedValues);
+
+        String[] sortedReversedValues = null;
+        if (withSuffixIndex) {
+            sortedReversedValues = new String[sortedValues.length];
+            for (int i = 0; i < sortedValues.length; i++) {
+                sortedReversedValues[i] = reverse(sortedValues[i]);
+            }
+            Arrays.sort(sortedReversedValues);
+        }
+
+        return new AttributeIndex(attributeName, positionsByValue, presence, sortedValues, sortedReversedValues);
+    }
+
+    String getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * Positions of entries, that contain the normalized value.
+     */
+    int[] find(String normalizedValue) {
+        return positionsByValue.getOrDefault(normalizedValue, EMPTY_POSITIONS);
+    }
+
+    /**
+     * Positions of entries, that contain any value of the attribute.
+     */
+    BitSet findPresent() {
+        return (BitSet) presence.clone();
+    }
+
+    /**
+     * Positions of entries, that contain a value starting with the normalized prefix.
+     */
+    BitSet findByPrefix(String normalizedPrefix) {
+        BitSet result = new BitSet(presence.length());
+        for (int i = lowerBound(sortedValues, normalizedPrefix);
+             i < sortedValues.length && sortedValues[i].startsWith(normalizedPrefix); i++) {
+            addPositions(result, positionsByValue.get(sortedValues[i]));
+        }
+
+        return result;
+    }
+
+    boolean hasSuffixIndex() {
+        return sortedReversedValues != null;
+    }
+
+    /**
+     * Positions of entries, that contain a value ending with the normalized suffix.
+     * Available only if the suffix index is built.
+     */
+    BitSet findBySuffix(String normalizedSuffix) {
+        if (sortedReversedValues == null) {
+            throw new IllegalStateException("Suffix index is not built for attribute " + attributeName);
+        }
+
+        String reversedSuffix = reverse(normalizedSuffix);
+        BitSet result = new BitSet(presence.length());
+        for (int i = lowerBound(sortedReversedValues, reversedSuffix);
+             i < sortedReversedValues.length && sortedReversedValues[i].startsWith(reversedSuffix); i++) {
+            addPositions(result, positionsByValue.get(reverse(sortedReversedValues[i])));
+        }
+
+        return result;
+    }
+
+    private static void addPositions(BitSet result, int[] positions) {
+        for (int position : positions) {
+            result.set(position);
+        }
+    }
+
+    /**
+     * Index of the first value, that is not less than the key.
+     */
+    private static int lowerBound(String[] sortedValues, String key) {
+        int index = Arrays.binarySearch(sortedValues, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static String reverse(String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+
+    /**
+     * Accumulates positions of the entries. Entries are visited in the order, so positions are already sorted.
+     */
+    private static final class PositionsBuilder {
+        private int[] positions = new int[1];
+        private int size;
+
+        void add(int position) {
+            // One entry can contain the same normalized value several times.
+            if (size > 0 && positions[size - 1] == position) {
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        int[] build() {
+            return size == positions.length ? positions : Arrays.copyOf(positions, size);
+        }
+    }
+
+}
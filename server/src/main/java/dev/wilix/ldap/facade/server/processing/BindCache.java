@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.wilix.ldap.facade.api.Authentication;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of recent binds by bind DN. Passwords are not kept, only their salted slow hashes.
+ * Bind with the same DN and password gets the remembered result without asking the storage.
+ */
+class BindCache {
+
+    private static final String HASH_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int hashIterations;
+    private final Cache<String, VerifiedBind> successfulBinds;
+    private final Cache<String, VerifiedBind> failedBinds;
+
+    BindCache(long expirationSeconds, long maxSize, long negativeExpirationSeconds, long negativeMaxSize,
+              int hashIterations) {
+        this.hashIterations = hashIterations;
+
+        successfulBinds = Caffeine.newBuilder()
+                .expireAfterWrite(expirationSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxSize)
+                .build();
+
+        failedBinds = Caffeine.newBuilder()
+                .expireAfterWrite(negativeExpirationSeconds, TimeUnit.SECONDS)
+                .maximumSize(negativeMaxSize)
+                .build();
+    }
+
+    /**
+     * @return Remembered result of the bind or null, if the bind with this password is not known.
+     */
+    Authentication find(String normalizedBindDn, String password) {
+        VerifiedBind successfulBind = successfulBinds.getIfPresent(normalizedBindDn);
+        if (successfulBind != null && successfulBind.matches(password)) {
+            return successfulBind.authentication;
+        }
+
+        VerifiedBind failedBind = failedBinds.getIfPresent(normalizedBindDn);
+        if (failedBind != null && failedBind.matches(password)) {
+            return failedBind.authentication;
+        }
+
+        return null;
+    }
+
+    void remember(String normalizedBindDn, String password, Authentication authentication) {
+        var bind = new VerifiedBind(password, authentication);
+        if (authentication.isSuccess()) {
+            successfulBinds.put(normalizedBindDn, bind);
+            failedBinds.invalidate(normalizedBindDn);
+        } else {
+            failedBinds.put(normalizedBindDn, bind);
+        }
+    }
+
+    private byte[] hash(String password, byte[] salt) {
+        var keySpec = new PBEKeySpec(password.toCharArray(), salt, hashIterations, HASH_LENGTH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(HASH_ALGORITHM).generateSecret(keySpec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Can't hash password", e);
+        } finally {
+            keySpec.clearPassword();
+        }
+    }
+
+    private class VerifiedBind {
+        private final byte[] salt;
+        private final byte[] passwordHash;
+        private final Authentication authentication;
+
+        VerifiedBind(String password, Authentication authentication) {
+            this.salt = new byte[SALT_LENGTH];
+            random.nextBytes(salt);
+            this.passwordHash = hash(password, salt);
+            this.authentication = authentication;
+        }
+
+        boolean matches(String password) {
+            return MessageDigest.isEqual(passwordHash, hash(password, salt));
+        }
+    }
+
+}
@@ -17,14 +17,18 @@
 package dev.wilix.ldap.facade.server.processing;
 
 import com.unboundid.ldap.protocol.BindRequestProtocolOp;
+import com.unboundid.ldap.sdk.DN;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.util.StaticUtils;
 import dev.wilix.ldap.facade.api.Authentication;
 import dev.wilix.ldap.facade.api.DataStorage;
+import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetAddress;
 import java.util.function.Function;
 
 /**
@@ -36,13 +40,34 @@ public class BindOperationProcessor {
 
     private final DataStorage userStorage;
     private final LdapNamingHelper namingHelper;
+    // Null, if binds are not cached.
+    private final BindCache bindCache;
+    private final KnownUsersFilter knownUsersFilter;
+    private final BindThrottler bindThrottler;
 
-    public BindOperationProcessor(DataStorage userStorage, LdapNamingHelper namingHelper) {
+    public BindOperationProcessor(DataStorage userStorage, LdapNamingHelper namingHelper,
+                                  LdapConfigurationProperties ldapProperties, KnownUsersFilter knownUsersFilter) {
         this.userStorage = userStorage;
         this.namingHelper = namingHelper;
+        this.knownUsersFilter = knownUsersFilter;
+
+        if (ldapProperties.getBindCacheExpirationSeconds() > 0) {
+            bindCache = new BindCache(ldapProperties.getBindCacheExpirationSeconds(), ldapProperties.getBindCacheMaxSize(),
+                    ldapProperties.getBindNegativeCacheExpirationSeconds(), ldapProperties.getBindNegativeCacheMaxSize(),
+                    ldapProperties.getBindCacheHashIterations());
+        } else {
+            bindCache = null;
+        }
+
+        bindThrottler = new BindThrottler(ldapProperties.getBindRatePerDnPerMinute(), ldapProperties.getBindBurstPerDn(),
+                ldapProperties.getBindRatePerAddressPerMinute(), ldapProperties.getBindBurstPerAddress(),
+                ldapProperties.getBindThrottlingIdleMinutes());
     }
 
-    Authentication doBind(BindRequestProtocolOp request) throws LDAPException {
+    /**
+     * @param clientAddress Address of the client or null, if it is unknown.
+     */
+    Authentication doBind(BindRequestProtocolOp request, InetAddress clientAddress) throws LDAPException {
         if (request.getCredentialsType() != BindRequestProtocolOp.CRED_TYPE_SIMPLE) {
             LOG.warn("Not a simple request {}", request);
             throw new LDAPException(ResultCode.INVALID_CREDENTIALS,
@@ -96,6 +121,30 @@ public class BindOperationProcessor {
                     "Username or password are wrong.");
         }
 
+        // Unknown users are rejected before the bind cache and the throttler, so they cost neither.
+        if (isUnknownUser(request.getBindDN())) {
+            LOG.debug("Bind of unknown user {} is rejected", request.getBindDN());
+            return Authentication.NEGATIVE;
+        }
+
+        String normalizedBindDn = normalizeBindDn(request.getBindDN());
+
+        // Limits are checked before the bind cache, because its password hashing is expensive too.
+        if ( ! bindThrottler.isAllowed(normalizedBindDn, clientAddress)) {
+            throw tooManyBinds(request, clientAddress);
+        }
+
+        if (bindCache != null) {
+            Authentication cachedResult = bindCache.find(normalizedBindDn, password);
+            if (cachedResult != null) {
+                LOG.debug("Bind result for {} is taken from cache", request.getBindDN());
+                if ( ! cachedResult.isSuccess()) {
+                    bindThrottler.countFailure(normalizedBindDn, clientAddress);
+                }
+                return cachedResult;
+            }
+        }
+
         Authentication authResult;
         try {
             authResult = authenticator.apply(password);
@@ -105,6 +154,42 @@ public class BindOperationProcessor {
                     String.format("Error with data storage: %s", e.getMessage()));
         }
 
+        if (bindCache != null) {
+            bindCache.remember(normalizedBindDn, password, authResult);
+        }
+        if ( ! authResult.isSuccess()) {
+            bindThrottler.countFailure(normalizedBindDn, clientAddress);
+        }
+
         return authResult;
     }
+
+    private static LDAPException tooManyBinds(BindRequestProtocolOp request, InetAddress clientAddress) {
+        LOG.warn("Too many binds for {} from {}", request.getBindDN(), clientAddress);
+        return new LDAPException(ResultCode.UNWILLING_TO_PERFORM, "Too many bind attempts. Try again later.");
+    }
+
+    private boolean isUnknownUser(String bindDn) {
+        if (namingHelper.isServiceDn(bindDn) || ! namingHelper.isUserDn(bindDn)) {
+            return false;
+        }
+
+        String userName;
+        try {
+            userName = namingHelper.extractUserNameFromDn(bindDn);
+        } catch (Exception e) {
+            // Reported by the authenticator.
+            return false;
+        }
+
+        return userName != null && ! userName.isBlank() && ! knownUsersFilter.mightBeKnown(userName);
+    }
+
+    private String normalizeBindDn(String bindDn) {
+        try {
+            return new DN(bindDn).toNormalizedString();
+        } catch (LDAPException e) {
+            return StaticUtils.toLowerCase(bindDn);
+        }
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of failed binds for every bind DN and every client address. Successful binds are not counted,
+ * so clients, that bind for many users (like proxies of web applications), are not limited, while they are right.
+ * Binds are checked against the limits before the password is hashed, so rejected binds cost nothing.
+ * Buckets of DNs and addresses, that do not bind for a while, are dropped.
+ */
+class BindThrottler {
+
+    private final long ratePerDn;
+    private final long burstPerDn;
+    private final long ratePerAddress;
+    private final long burstPerAddress;
+    private final Cache<String, TokenBucket> bucketsByDn;
+    private final Cache<InetAddress, TokenBucket> bucketsByAddress;
+
+    BindThrottler(long ratePerDn, long burstPerDn, long ratePerAddress, long burstPerAddress, long idleMinutes) {
+        this.ratePerDn = ratePerDn;
+        this.burstPerDn = burstPerDn;
+        this.ratePerAddress = ratePerAddress;
+        this.burstPerAddress = burstPerAddress;
+
+        bucketsByDn = Caffeine.newBuilder()
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .build();
+        bucketsByAddress = Caffeine.newBuilder()
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * Checks the limits without counting the bind.
+     *
+     * @param clientAddress Address of the client or null, if it is unknown.
+     * @return False, if the bind must be rejected.
+     */
+    boolean isAllowed(String normalizedBindDn, InetAddress clientAddress) {
+        if (clientAddress != null && ratePerAddress > 0) {
+            TokenBucket bucket = bucketsByAddress.getIfPresent(clientAddress);
+            if (bucket != null && ! bucket.hasTokens()) {
+                return false;
+            }
+        }
+
+        if (ratePerDn > 0) {
+            TokenBucket bucket = bucketsByDn.getIfPresent(normalizedBindDn);
+            return bucket == null || bucket.hasTokens();
+        }
+        return true;
+    }
+
+    /**
+     * Counts the failed bind. Failures over the limit are not counted, they are rejected by the next check.
+     *
+     * @param clientAddress Address of the client or null, if it is unknown.
+     */
+    void countFailure(String normalizedBindDn, InetAddress clientAddress) {
+        if (clientAddress != null && ratePerAddress > 0) {
+            bucketsByAddress.get(clientAddress, key -> new TokenBucket(ratePerAddress, burstPerAddress)).tryAcquire();
+        }
+        if (ratePerDn > 0) {
+            bucketsByDn.get(normalizedBindDn, key -> new TokenBucket(ratePerDn, burstPerDn)).tryAcquire();
+        }
+    }
+
+}
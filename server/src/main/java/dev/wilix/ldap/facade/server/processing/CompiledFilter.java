@@ -0,0 +1,344 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.matchingrules.MatchingRule;
+import com.unboundid.ldap.sdk.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Search filter prepared for matching against snapshots.
+ * Attribute names and assertion values are normalized once at compilation,
+ * attribute names are resolved to slots of the snapshot at binding.
+ * The compiled filter does not depend on the snapshot, so it can be shared between searches.
+ */
+abstract class CompiledFilter {
+
+    /**
+     * Prepares the filter to check entries of the snapshot.
+     */
+    abstract EntryMatcher bind(DirectorySnapshot snapshot);
+
+    static CompiledFilter compile(Filter filter) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+                return new AndFilter(compileAll(filter.getComponents()));
+            case Filter.FILTER_TYPE_OR:
+                return new OrFilter(compileAll(filter.getComponents()));
+            case Filter.FILTER_TYPE_NOT:
+                return new NotFilter(compile(filter.getNOTComponent()));
+            case Filter.FILTER_TYPE_EQUALITY:
+                if (hasOptions(filter)) {
+                    break;
+                }
+                return new EqualityFilter(filter,
+                        ValueNormalizer.normalizeValue(filter.getRawAssertionValue()));
+            case Filter.FILTER_TYPE_PRESENCE:
+                if (hasOptions(filter)) {
+                    break;
+                }
+                return new PresenceFilter(filter);
+            case Filter.FILTER_TYPE_SUBSTRING:
+                if (hasOptions(filter)) {
+                    break;
+                }
+                return new SubstringFilter(filter,
+                        normalizeSubstring(filter.getRawSubInitialValue(), MatchingRule.SUBSTRING_TYPE_SUBINITIAL),
+                        normalizeSubstrings(filter.getRawSubAnyValues()),
+                        normalizeSubstring(filter.getRawSubFinalValue(), MatchingRule.SUBSTRING_TYPE_SUBFINAL));
+            default:
+                break;
+        }
+
+        // Ordering, approximate and extensible filters are rare, they are checked by the original filter.
+        return new GenericFilter(filter);
+    }
+
+    private static List<CompiledFilter> compileAll(Filter[] filters) {
+        List<CompiledFilter> result = new ArrayList<>(filters.length);
+        for (Filter filter : filters) {
+            result.add(compile(filter));
+        }
+        return result;
+    }
+
+    private static boolean hasOptions(Filter filter) {
+        return filter.getAttributeName().indexOf(';') >= 0;
+    }
+
+    private static String normalizeSubstring(ASN1OctetString value, byte substringType) {
+        return value == null ? null : ValueNormalizer.normalizeSubstring(value, substringType);
+    }
+
+    private static String[] normalizeSubstrings(ASN1OctetString[] values) {
+        String[] result = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = ValueNormalizer.normalizeSubstring(values[i], MatchingRule.SUBSTRING_TYPE_SUBANY);
+        }
+        return result;
+    }
+
+    private static final class AndFilter extends CompiledFilter {
+        private final List<CompiledFilter> components;
+
+        AndFilter(List<CompiledFilter> components) {
+            this.components = components;
+        }
+
+        @Override
+        EntryMatcher bind(DirectorySnapshot snapshot) {
+            List<EntryMatcher> matchers = new ArrayList<>(components.size());
+            for (CompiledFilter component : components) {
+                EntryMatcher matcher = component.bind(snapshot);
+                if (matcher == EntryMatcher.NONE) {
+                    return EntryMatcher.NONE;
+                }
+                if (matcher != EntryMatcher.ALL) {
+                    matchers.add(matcher);
+                }
+            }
+
+            if (matchers.isEmpty()) {
+                return EntryMatcher.ALL;
+            }
+            if (matchers.size() == 1) {
+                return matchers.get(0);
+            }
+
+            EntryMatcher[] matchersArray = matchers.toArray(new EntryMatcher[0]);
+            return position -> {
+                for (EntryMatcher matcher : matchersArray) {
+                    if ( ! matcher.matches(position)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+    }
+
+    private static final class OrFilter extends CompiledFilter {
+        private final List<CompiledFilter> components;
+
+        OrFilter(List<CompiledFilter> components) {
+            this.components = components;
+        }
+
+        @Override
+        EntryMatcher bind(DirectorySnapshot snapshot) {
+            List<EntryMatcher> matchers = new ArrayList<>(components.size());
+            for (CompiledFilter component : components) {
+                EntryMatcher matcher = component.bind(snapshot);
+                if (matcher == EntryMatcher.ALL) {
+                    return EntryMatcher.ALL;
+                }
+                if (matcher != EntryMatcher.NONE) {
+                    matchers.add(matcher);
+                }
+            }
+
+            if (matchers.isEmpty()) {
+                return EntryMatcher.NONE;
+            }
+            if (matchers.size() == 1) {
+                return matchers.get(0);
+            }
+
+            EntryMatcher[] matchersArray = matchers.toArray(new EntryMatcher[0]);
+            return position -> {
+                for (EntryMatcher matcher : matchersArray) {
+                    if (matcher.matches(position)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    private static final class NotFilter extends CompiledFilter {
+        private final CompiledFilter component;
+
+        NotFilter(CompiledFilter component) {
+            this.component = component;
+        }
+
+        @Override
+        EntryMatcher bind(DirectorySnapshot snapshot) {
+            EntryMatcher matcher = component.bind(snapshot);
+            if (matcher == EntryMatcher.ALL) {
+                return EntryMatcher.NONE;
+            }
+            if (matcher == EntryMatcher.NONE) {
+                return EntryMatcher.ALL;
+            }
+            return position -> ! matcher.matches(position);
+        }
+    }
+
+    /**
+     * Base for filters on a single attribute. Attributes missing in the snapshot never match,
+     * binary attributes are checked by the original filter.
+     */
+    private abstract static class AttributeFilter extends CompiledFilter {
+        private final Filter filter;
+        private final String attributeName;
+
+        AttributeFilter(Filter filter) {
+            this.filter = filter;
+            this.attributeName = ValueNormalizer.normalizeAttributeName(filter.getAttributeName());
+        }
+
+        @Override
+        EntryMatcher bind(DirectorySnapshot snapshot) {
+            if (DirectorySnapshot.BINARY_ATTRIBUTES.contains(attributeName)) {
+                return new GenericFilter(filter).bind(snapshot);
+            }
+
+            NormalizedEntries normalizedEntries = snapshot.getNormalizedEntries();
+            int slot = normalizedEntries.getSlot(attributeName);
+            if (slot < 0) {
+                return EntryMatcher.NONE;
+            }
+
+            return bind(normalizedEntries, slot, snapshot.size());
+        }
+
+        abstract EntryMatcher bind(NormalizedEntries normalizedEntries, int slot, int entriesCount);
+    }
+
+    private static final class EqualityFilter extends AttributeFilter {
+        private final String value;
+
+        EqualityFilter(Filter filter, String value) {
+            super(filter);
+            this.value = value;
+        }
+
+        @Override
+        EntryMatcher bind(NormalizedEntries normalizedEntries, int slot, int entriesCount) {
+            return position -> {
+                String[] values = normalizedEntries.getValues(position, slot);
+                if (values != null) {
+                    for (String entryValue : values) {
+                        if (value.equals(entryValue)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    private static final class PresenceFilter extends AttributeFilter {
+
+        PresenceFilter(Filter filter) {
+            super(filter);
+        }
+
+        @Override
+        EntryMatcher bind(NormalizedEntries normalizedEntries, int slot, int entriesCount) {
+            // Filters like (objectClass=*) match every entry, so there is nothing to check.
+            if (normalizedEntries.countEntriesWith(slot) == entriesCount) {
+                return EntryMatcher.ALL;
+            }
+            return position -> normalizedEntries.getValues(position, slot) != null;
+        }
+    }
+
+    private static final class SubstringFilter extends AttributeFilter {
+        private final String subInitial;
+        private final String[] subAny;
+        private final String subFinal;
+
+        SubstringFilter(Filter filter, String subInitial, String[] subAny, String subFinal) {
+            super(filter);
+            this.subInitial = subInitial;
+            this.subAny = subAny;
+            this.subFinal = subFinal;
+        }
+
+        @Override
+        EntryMatcher bind(NormalizedEntries normalizedEntries, int slot, int entriesCount) {
+            return position -> {
+                String[] values = normalizedEntries.getValues(position, slot);
+                if (values != null) {
+                    for (String entryValue : values) {
+                        if (matches(entryValue)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            };
+        }
+
+        /**
+         * The same checks as in the substring matching rule: components do not overlap and go in order.
+         */
+        private boolean matches(String value) {
+            int start = 0;
+            int end = value.length();
+
+            if (subInitial != null) {
+                if ( ! value.startsWith(subInitial)) {
+                    return false;
+                }
+                start = subInitial.length();
+            }
+
+            if (subFinal != null) {
+                if ( ! value.endsWith(subFinal)) {
+                    return false;
+                }
+                end = value.length() - subFinal.length();
+                if (end < start) {
+                    return false;
+                }
+            }
+
+            for (String component : subAny) {
+                int index = value.indexOf(component, start);
+                if (index < 0 || index + component.length() > end) {
+                    return false;
+                }
+                start = index + component.length();
+            }
+
+            return true;
+        }
+    }
+
+    private static final class GenericFilter extends CompiledFilter {
+        private final Filter filter;
+
+        GenericFilter(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        EntryMatcher bind(DirectorySnapshot snapshot) {
+            return position -> filter.matchesEntry(snapshot.get(position));
+        }
+    }
+
+}
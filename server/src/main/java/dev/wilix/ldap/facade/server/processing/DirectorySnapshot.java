@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable set of entries, that were loaded from the storage, with indexes built over them.
+ * Entries are addressed by their positions in the snapshot.
+ */
+final class DirectorySnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectorySnapshot.class);
+
+    // Values of these attributes are not normalized. Filters on them are checked against entries directly.
+    static final Set<String> BINARY_ATTRIBUTES = Set.of(
+            ValueNormalizer.normalizeAttributeName(SearchOperationProcessor.USER_AVATAR_ATTRIBUTE_NAME));
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    // Approximate sizes of objects, that hold entries, attributes and values.
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int ATTRIBUTE_OVERHEAD_BYTES = 80;
+    private static final int VALUE_OVERHEAD_BYTES = 32;
+
+    private final long version = VERSIONS.incrementAndGet();
+    private final Entry[] entries;
+    private final long estimatedSizeBytes;
+    private final NormalizedEntries normalizedEntries;
+    private final Map<String, AttributeIndex> indexes;
+    private final DnTree dnTree;
+    private final Map<String, EntryOrdering> orderings;
+    // Projections by requested attributes.
+    private final Cache<String, EntryProjection> projections;
+
+    private DirectorySnapshot(Entry[] entries, NormalizedEntries normalizedEntries,
+                              Map<String, AttributeIndex> indexes, DnTree dnTree,
+                              Map<String, EntryOrdering> orderings, int maxProjections) {
+        this.entries = entries;
+        this.estimatedSizeBytes = estimateSize(entries);
+        this.normalizedEntries = normalizedEntries;
+        this.indexes = indexes;
+        this.dnTree = dnTree;
+        this.orderings = orderings;
+        this.projections = Caffeine.newBuilder()
+                .maximumSize(maxProjections)
+                .build();
+    }
+
+    static DirectorySnapshot build(List<Entry> entries, Collection<String> indexedAttributes, boolean withSuffixIndexes,
+                                   Collection<String> sortedAttributes, int maxProjections) {
+        Entry[] entriesArray = entries.toArray(new Entry[0]);
+        NormalizedEntries normalizedEntries = NormalizedEntries.build(entriesArray, BINARY_ATTRIBUTES);
+
+        Map<String, AttributeIndex> indexes = new HashMap<>();
+        for (String attributeName : indexedAttributes) {
+            String normalizedName = ValueNormalizer.normalizeAttributeName(attributeName);
+            if (BINARY_ATTRIBUTES.contains(normalizedName)) {
+                LOG.warn("Binary attribute {} can not be indexed", attributeName);
+                continue;
+            }
+            indexes.put(normalizedName, AttributeIndex.build(normalizedName, normalizedEntries,
+                    entriesArray.length, withSuffixIndexes));
+        }
+
+        Map<String, EntryOrdering> orderings = new HashMap<>();
+        for (String attributeName : sortedAttributes) {
+            String normalizedName = ValueNormalizer.normalizeAttributeName(attributeName);
+            if (BINARY_ATTRIBUTES.contains(normalizedName)) {
+                LOG.warn("Binary attribute {} can not be sorted", attributeName);
+                continue;
+            }
+            orderings.put(normalizedName, EntryOrdering.build(normalizedName, normalizedEntries, entriesArray.length));
+        }
+
+        LOG.debug("Snapshot with {} entries, indexes {} and orderings {} is built", entriesArray.length,
+                indexes.keySet(), orderings.keySet());
+
+        return new DirectorySnapshot(entriesArray, normalizedEntries, indexes, DnTree.build(entriesArray), orderings,
+                maxProjections);
+    }
+
+    /**
+     * Rough estimate of the memory used by entries. Normalized values and indexes take about as much,
+     * so they are counted as the second copy of entries.
+     */
+    private static long estimateSize(Entry[] entries) {
+        long result = 0;
+        for (Entry entry : entries) {
+            result += estimateSize(entry);
+        }
+        return 2 * result;
+    }
+
+    /**
+     * Rough estimate of the memory used by the entry alone.
+     */
+    static long estimateSize(Entry entry) {
+        long result = ENTRY_OVERHEAD_BYTES + 2L * entry.getDN().length();
+        for (Attribute attribute : entry.getAttributes()) {
+            result += ATTRIBUTE_OVERHEAD_BYTES + 2L * attribute.getName().length();
+            for (byte[] value : attribute.getValueByteArrays()) {
+                result += VALUE_OVERHEAD_BYTES + value.length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unique number of the snapshot. Every built snapshot gets a new version.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    long getEstimatedSizeBytes() {
+        return estimatedSizeBytes;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    Entry get(int position) {
+        return entries[position];
+    }
+
+    NormalizedEntries getNormalizedEntries() {
+        return normalizedEntries;
+    }
+
+    DnTree getDnTree() {
+        return dnTree;
+    }
+
+    /**
+     * @return Index for the attribute or null, if the attribute is not indexed.
+     */
+    AttributeIndex getIndex(String attributeName) {
+        return indexes.get(ValueNormalizer.normalizeAttributeName(attributeName));
+    }
+
+    /**
+     * @return Positions of all entries sorted by the attribute or null, if the ordering is not precomputed.
+     */
+    int[] getOrdering(String attributeName, boolean reverseOrder) {
+        EntryOrdering ordering = orderings.get(ValueNormalizer.normalizeAttributeName(attributeName));
+        return ordering == null ? null : ordering.getPositions(reverseOrder);
+    }
+
+    /**
+     * @return Entries with only requested attributes. Projected entries are kept, while the snapshot is used.
+     */
+    EntryProjection getProjection(List<String> attributes, boolean typesOnly) {
+        return projections.get(EntryProjection.createKey(attributes, typesOnly),
+                key -> new EntryProjection(this, attributes, typesOnly));
+    }
+
+}
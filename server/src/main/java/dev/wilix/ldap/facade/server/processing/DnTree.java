@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchy of the snapshot entries by their normalized DNs.
+ * Parent DNs are not required to be entries of the snapshot, so base DNs of users and groups are nodes too.
+ */
+final class DnTree {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DnTree.class);
+
+    private final int size;
+    private final Map<String, Integer> positionsByDn;
+    private final Map<String, int[]> childrenByDn;
+    // Only for DNs, that have descendants. Leaf entries are not stored to save memory.
+    private final Map<String, BitSet> descendantsByDn;
+
+    private DnTree(int size, Map<String, Integer> positionsByDn,
+                   Map<String, int[]> childrenByDn, Map<String, BitSet> descendantsByDn) {
+        this.size = size;
+        this.positionsByDn = positionsByDn;
+        this.childrenByDn = childrenByDn;
+        this.descendantsByDn = descendantsByDn;
+    }
+
+    static DnTree build(Entry[] entries) {
+        Map<String, Integer> positionsByDn = new HashMap<>(entries.length * 4 / 3 + 1);
+        Map<String, List<Integer>> children = new HashMap<>();
+        Map<String, BitSet> descendantsByDn = new HashMap<>();
+
+        for (int position = 0; position < entries.length; position++) {
+            DN dn;
+            try {
+                dn = entries[position].getParsedDN();
+            } catch (LDAPException e) {
+                LOG.warn("Entry with wrong DN {} would not be found by search", entries[position].getDN());
+                continue;
+            }
+
+            positionsByDn.put(dn.toNormalizedString(), position);
+
+            DN parent = dn.getParent();
+            if (parent != null) {
+                children.computeIfAbsent(parent.toNormalizedString(), s -> new ArrayList<>()).add(position);
+            }
+            for (DN ancestor = parent; ancestor != null; ancestor = ancestor.getParent()) {
+                descendantsByDn.computeIfAbsent(ancestor.toNormalizedString(), s -> new BitSet(entries.length))
+                        .set(position);
+            }
+        }
+
+        Map<String, int[]> childrenByDn = new HashMap<>(children.size() * 4 / 3 + 1);
+        children.forEach((dn, positions) -> childrenByDn.put(dn, positions.stream().mapToInt(Integer::intValue).toArray()));
+
+        return new DnTree(entries.length, positionsByDn, childrenByDn, descendantsByDn);
+    }
+
+    /**
+     * Positions of entries, that are in the scope of the base DN.
+     *
+     * @return Positions or null, if the scope is not supported and entries have to be checked one by one.
+     * The root DN is not a node of the tree, so searches from it are checked one by one too.
+     */
+    BitSet findInScope(DN baseDn, SearchScope scope) {
+        if (baseDn.isNullDN()) {
+            return null;
+        }
+
+        String normalizedBaseDn = baseDn.toNormalizedString();
+        BitSet result = new BitSet(size);
+
+        switch (scope.intValue()) {
+            case SearchScope.BASE_INT_VALUE:
+                addBase(result, normalizedBaseDn);
+                break;
+            case SearchScope.ONE_INT_VALUE:
+                for (int position : childrenByDn.getOrDefault(normalizedBaseDn, new int[0])) {
+                    result.set(position);
+                }
+                break;
+            case SearchScope.SUB_INT_VALUE:
+                addBase(result, normalizedBaseDn);
+                addDescendants(result, normalizedBaseDn);
+                break;
+            case SearchScope.SUBORDINATE_SUBTREE_INT_VALUE:
+                addDescendants(result, normalizedBaseDn);
+                break;
+            default:
+                return null;
+        }
+
+        return result;
+    }
+
+    private void addBase(BitSet result, String normalizedBaseDn) {
+        Integer position = positionsByDn.get(normalizedBaseDn);
+        if (position != null) {
+            result.set(position);
+        }
+    }
+
+    private void addDescendants(BitSet result, String normalizedBaseDn) {
+        BitSet descendants = descendantsByDn.get(normalizedBaseDn);
+        if (descendants != null) {
+            result.or(descendants);
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * Search filter bound to the snapshot. Checks entries of the snapshot by their positions.
+ */
+@FunctionalInterface
+interface EntryMatcher {
+
+    EntryMatcher ALL = position -> true;
+
+    EntryMatcher NONE = position -> false;
+
+    boolean matches(int position) throws LDAPException;
+
+}
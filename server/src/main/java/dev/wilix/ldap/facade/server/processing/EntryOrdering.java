@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.sdk.controls.SortKey;
+import com.unboundid.util.StaticUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Positions of the snapshot entries sorted by values of an attribute in both directions.
+ * Entries are ordered by normalized values, so the order is case-insensitive.
+ * Multi-valued entries are ordered by their least value ascending and by their greatest value descending.
+ * Entries without the attribute are ordered as having a value greater than any other (RFC 2891),
+ * so they are placed at the end ascending and at the beginning descending.
+ */
+final class EntryOrdering {
+
+    // Matching rules, which order the same way as normalized values. Empty rule means the default one.
+    private static final Set<String> SUPPORTED_ORDERING_RULES = Set.of("caseignoreorderingmatch", "2.5.13.3");
+
+    private final int[] ascending;
+    private final int[] descending;
+
+    private EntryOrdering(int[] ascending, int[] descending) {
+        this.ascending = ascending;
+        this.descending = descending;
+    }
+
+    static EntryOrdering build(String attributeName, NormalizedEntries normalizedEntries, int entriesCount) {
+        int[] positions = new int[entriesCount];
+        Arrays.setAll(positions, position -> position);
+
+        return new EntryOrdering(
+                sort(positions, normalizedEntries, List.of(new SortKey(attributeName, false))),
+                sort(positions, normalizedEntries, List.of(new SortKey(attributeName, true))));
+    }
+
+    int[] getPositions(boolean reverseOrder) {
+        return reverseOrder ? descending : ascending;
+    }
+
+    static boolean isSupported(SortKey sortKey) {
+        return sortKey.getMatchingRuleID() == null ||
+                SUPPORTED_ORDERING_RULES.contains(StaticUtils.toLowerCase(sortKey.getMatchingRuleID()));
+    }
+
+    /**
+     * Sorts the positions by the keys. Entries equal by all keys keep their relative order.
+     *
+     * @return New array of sorted positions.
+     */
+    static int[] sort(int[] positions, NormalizedEntries normalizedEntries, List<SortKey> sortKeys) {
+        // Values to compare are picked once for every entry and every key.
+        String[][] sortValues = new String[sortKeys.size()][positions.length];
+        boolean[] reverseOrders = new boolean[sortKeys.size()];
+        for (int keyIndex = 0; keyIndex < sortKeys.size(); keyIndex++) {
+            SortKey sortKey = sortKeys.get(keyIndex);
+            reverseOrders[keyIndex] = sortKey.reverseOrder();
+
+            int slot = normalizedEntries.getSlot(ValueNormalizer.normalizeAttributeName(sortKey.getAttributeName()));
+            if (slot < 0) {
+                continue;
+            }
+            for (int i = 0; i < positions.length; i++) {
+                sortValues[keyIndex][i] = pickSortValue(normalizedEntries.getValues(positions[i], slot),
+                        sortKey.reverseOrder());
+            }
+        }
+
+        Integer[] order = new Integer[positions.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (left, right) -> {
+            for (int keyIndex = 0; keyIndex < sortValues.length; keyIndex++) {
+                int result = compareSortValues(sortValues[keyIndex][left], sortValues[keyIndex][right],
+                        reverseOrders[keyIndex]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Integer.compare(left, right);
+        });
+
+        int[] result = new int[positions.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = positions[order[i]];
+        }
+        return result;
+    }
+
+    private static String pickSortValue(String[] values, boolean reverseOrder) {
+        if (values == null) {
+            return null;
+        }
+
+        String result = values[0];
+        for (int i = 1; i < values.length; i++) {
+            int comparison = values[i].compareTo(result);
+            if (reverseOrder ? comparison > 0 : comparison < 0) {
+                result = values[i];
+            }
+        }
+        return result;
+    }
+
+    private static int compareSortValues(String left, String right, boolean reverseOrder) {
+        if (left == null || right == null) {
+            // Missing values are the greatest ones.
+            int result = left == null ? (right == null ? 0 : 1) : -1;
+            return reverseOrder ? -result : result;
+        }
+        return reverseOrder ? right.compareTo(left) : left.compareTo(right);
+    }
+
+}
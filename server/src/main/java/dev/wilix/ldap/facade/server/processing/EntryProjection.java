@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.listener.SearchEntryParer;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.util.StaticUtils;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Entries of the snapshot with only requested attributes.
+ * Entries are projected on the first request and shared by all searches with the same attributes.
+ */
+final class EntryProjection {
+
+    private static final String ALL_USER_ATTRIBUTES = "*";
+    private static final String NO_ATTRIBUTES = "1.1";
+
+    private final DirectorySnapshot snapshot;
+    private final SearchEntryParer parer;
+    private final boolean typesOnly;
+    private final boolean noAttributes;
+    // Null, if the entries are returned as they are.
+    private final AtomicReferenceArray<Entry> projectedEntries;
+
+    EntryProjection(DirectorySnapshot snapshot, List<String> attributes, boolean typesOnly) {
+        this.snapshot = snapshot;
+        this.parer = new SearchEntryParer(attributes, null);
+        this.typesOnly = typesOnly;
+        this.noAttributes = attributes.size() == 1 && NO_ATTRIBUTES.equals(attributes.get(0));
+
+        boolean allAttributes = attributes.isEmpty() || attributes.contains(ALL_USER_ATTRIBUTES);
+        this.projectedEntries = allAttributes && ! typesOnly ? null : new AtomicReferenceArray<>(snapshot.size());
+    }
+
+    /**
+     * Key of the projection. The order and the case of requested attributes does not matter.
+     */
+    static String createKey(List<String> attributes, boolean typesOnly) {
+        var normalizedAttributes = new TreeSet<String>();
+        for (String attribute : attributes) {
+            normalizedAttributes.add(StaticUtils.toLowerCase(attribute));
+        }
+        return typesOnly + ":" + String.join(",", normalizedAttributes);
+    }
+
+    Entry get(int position) {
+        if (projectedEntries == null) {
+            return snapshot.get(position);
+        }
+
+        Entry entry = projectedEntries.get(position);
+        if (entry == null) {
+            // Concurrent searches may project the same entry twice. Both copies are equal.
+            entry = project(snapshot.get(position));
+            projectedEntries.set(position, entry);
+        }
+        return entry;
+    }
+
+    private Entry project(Entry entry) {
+        if (noAttributes) {
+            return new Entry(entry.getDN());
+        }
+
+        Entry paredEntry = parer.pareEntry(entry);
+        if ( ! typesOnly) {
+            return paredEntry;
+        }
+
+        Entry result = new Entry(paredEntry.getDN());
+        for (Attribute attribute : paredEntry.getAttributes()) {
+            result.addAttribute(new Attribute(attribute.getName()));
+        }
+        return result;
+    }
+
+}
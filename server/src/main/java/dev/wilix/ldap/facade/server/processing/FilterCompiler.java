@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Compiles search filters and keeps compiled filters by their normalized string representation.
+ * Clients usually send a few filter templates, so most of filters are compiled once.
+ */
+class FilterCompiler {
+
+    private final Cache<String, CompiledFilter> compiledFilters;
+
+    FilterCompiler(int cacheSize) {
+        compiledFilters = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+    }
+
+    CompiledFilter compile(Filter filter) {
+        return compiledFilters.get(filter.toNormalizedString(), key -> CompiledFilter.compile(filter));
+    }
+
+}
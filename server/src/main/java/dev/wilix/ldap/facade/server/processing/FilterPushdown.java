@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.sdk.Filter;
+import dev.wilix.ldap.facade.api.SearchPredicate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Translates search filters to predicates, which storages evaluate themselves.
+ * The predicate is a superset of the filter, so found entries still have to be checked against the filter.
+ */
+final class FilterPushdown {
+
+    // Values of these attributes are made or converted by the server, so storages do not know them.
+    private static final Set<String> SERVER_ATTRIBUTES = Set.of("dn", "objectclass", "memberof", "member",
+            ValueNormalizer.normalizeAttributeName(SearchOperationProcessor.USER_AVATAR_ATTRIBUTE_NAME));
+
+    private FilterPushdown() {
+    }
+
+    /**
+     * @return Predicate or null, if the filter can not be evaluated by storages.
+     */
+    static SearchPredicate translate(Filter filter) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+                return translateAnd(filter.getComponents());
+            case Filter.FILTER_TYPE_OR:
+                return translateOr(filter.getComponents());
+            case Filter.FILTER_TYPE_EQUALITY:
+                return isStorageAttribute(filter.getAttributeName())
+                        ? SearchPredicate.equalTo(filter.getAttributeName(), filter.getAssertionValue())
+                        : null;
+            case Filter.FILTER_TYPE_SUBSTRING:
+                // Any and final components are checked by the server.
+                return isStorageAttribute(filter.getAttributeName()) && filter.getSubInitialString() != null
+                        ? SearchPredicate.startsWith(filter.getAttributeName(), filter.getSubInitialString())
+                        : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Adds names of all attributes of the filter, including ones, which are not translated.
+     */
+    static void collectAttributes(Filter filter, Collection<String> attributes) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+            case Filter.FILTER_TYPE_OR:
+                for (Filter component : filter.getComponents()) {
+                    collectAttributes(component, attributes);
+                }
+                break;
+            case Filter.FILTER_TYPE_NOT:
+                collectAttributes(filter.getNOTComponent(), attributes);
+                break;
+            default:
+                if (filter.getAttributeName() != null) {
+                    attributes.add(filter.getAttributeName());
+                }
+        }
+    }
+
+    private static SearchPredicate translateAnd(Filter[] components) {
+        List<SearchPredicate> operands = new ArrayList<>();
+        for (Filter component : components) {
+            SearchPredicate operand = translate(component);
+            // This part of the filter would be checked by the server.
+            if (operand != null) {
+                operands.add(operand);
+            }
+        }
+
+        if (operands.isEmpty()) {
+            return null;
+        }
+        return operands.size() == 1 ? operands.get(0) : SearchPredicate.and(operands);
+    }
+
+    private static SearchPredicate translateOr(Filter[] components) {
+        if (components.length == 0) {
+            return null;
+        }
+
+        List<SearchPredicate> operands = new ArrayList<>();
+        for (Filter component : components) {
+            SearchPredicate operand = translate(component);
+            if (operand == null) {
+                // Any entry can match this part of the filter.
+                return null;
+            }
+            operands.add(operand);
+        }
+
+        return operands.size() == 1 ? operands.get(0) : SearchPredicate.or(operands);
+    }
+
+    private static boolean isStorageAttribute(String attributeName) {
+        return ! SERVER_ATTRIBUTES.contains(ValueNormalizer.normalizeAttributeName(attributeName));
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.unboundid.util.StaticUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Compact set of user names from the last loaded entities, that contain all users of the storage.
+ * Binds of users, which are definitely absent in it, are rejected without asking the storage.
+ * Names are compared ignoring case.
+ * Until such entities are loaded for the first time, every user is considered as known.
+ */
+public class KnownUsersFilter {
+
+    private final boolean enabled;
+    private final double falsePositiveProbability;
+    private volatile BloomFilter<CharSequence> userNames;
+
+    public KnownUsersFilter(boolean enabled, double falsePositiveProbability) {
+        this.enabled = enabled;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * Replaces known names with the new ones. Names have to be taken from entities with all users.
+     */
+    void update(Collection<String> names) {
+        if ( ! enabled) {
+            return;
+        }
+
+        BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(names.size(), 1), falsePositiveProbability);
+        for (String name : names) {
+            filter.put(StaticUtils.toLowerCase(name));
+        }
+        userNames = filter;
+    }
+
+    /**
+     * Adds names to the known ones. Names of removed users stay known until the next update.
+     */
+    void add(Collection<String> names) {
+        BloomFilter<CharSequence> filter = userNames;
+        if ( ! enabled || filter == null) {
+            return;
+        }
+
+        for (String name : names) {
+            filter.put(StaticUtils.toLowerCase(name));
+        }
+    }
+
+    /**
+     * @return False, if the user is definitely unknown.
+     */
+    boolean mightBeKnown(String userName) {
+        BloomFilter<CharSequence> filter = userNames;
+        return filter == null || filter.mightContain(StaticUtils.toLowerCase(userName));
+    }
+
+}
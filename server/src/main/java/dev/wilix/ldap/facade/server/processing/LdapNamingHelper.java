@@ -17,44 +17,46 @@
 package dev.wilix.ldap.facade.server.processing;
 
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import dev.wilix.ldap.facade.api.CompactEntry;
 import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
 
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Common utils to working with ldap patches.
+ * <p>
+ * DNs are recognized by the main name attribute of the first RDN and the base DN after it. Both are compared
+ * ignoring case, the name between them is taken as is.
  */
 public class LdapNamingHelper {
 
     private final LdapConfigurationProperties ldapProperties;
 
-    private final Pattern userEntryDnPattern;
-    private final Pattern serviceEntryDnPattern;
+    // Beginning of DNs of all entries (like "uid=").
+    private final String namePrefix;
+    // Endings of DNs (like ",ou=people,dc=example,dc=com").
+    private final String usersSuffix;
+    private final String servicesSuffix;
+    private final String groupsSuffix;
 
-    private final String userNameToDnTemplate;
-    private final String groupNameToDnTemplate;
+    // The same DNs are generated for entries and for their members in every loaded snapshot. They share instances.
+    private final Interner<String> dnInterner = Interners.newWeakInterner();
 
     public LdapNamingHelper(LdapConfigurationProperties ldapProperties) {
         this.ldapProperties = ldapProperties;
 
-        // FIXME Rework!
-        String mainNameAttr = ldapProperties.getMainNameAttribute();
-        userEntryDnPattern = Pattern.compile(mainNameAttr + "=(.*)," + ldapProperties.getUsersBaseDn());
-        serviceEntryDnPattern = Pattern.compile(mainNameAttr + "=(.*)," + ldapProperties.getServicesBaseDn());
-
-        userNameToDnTemplate = mainNameAttr + "=%s," + ldapProperties.getUsersBaseDn();
-        groupNameToDnTemplate = mainNameAttr + "=%s," + ldapProperties.getGroupsBaseDn();
+        namePrefix = ldapProperties.getMainNameAttribute() + "=";
+        usersSuffix = "," + ldapProperties.getUsersBaseDn();
+        servicesSuffix = "," + ldapProperties.getServicesBaseDn();
+        groupsSuffix = "," + ldapProperties.getGroupsBaseDn();
     }
 
     boolean isUserDn(String dn) {
-        return userEntryDnPattern.matcher(dn).matches();
+        return matches(dn, usersSuffix);
     }
 
     boolean isServiceDn(String dn) {
-        return serviceEntryDnPattern.matcher(dn).matches();
+        return matches(dn, servicesSuffix);
     }
 
     String getClassName(EntityType entityType) {
@@ -62,34 +64,40 @@ public class LdapNamingHelper {
     }
 
     String extractUserNameFromDn(String userDn) {
-        return firstGroupFromPattern(userEntryDnPattern, userDn);
+        return extractName(userDn, usersSuffix);
     }
 
     String extractServiceNameFromDn(String serviceDn) {
-        return firstGroupFromPattern(serviceEntryDnPattern, serviceDn);
+        return extractName(serviceDn, servicesSuffix);
     }
 
-    String generateDnForEntry(Map<String, List<String>> entry, EntityType entityType) {
+    String generateDnForEntry(CompactEntry entry, EntityType entityType) {
 
         // FIXME Required checks for the correct values of each intermediate object
         String entityName = entry.get(ldapProperties.getMainNameAttribute()).get(0);
 
-        return String.format(entityType.equals(EntityType.USER) ? userNameToDnTemplate : groupNameToDnTemplate, entityName);
+        return generateDnForEntryFromAttribute(entityName, entityType);
     }
 
     String generateDnForEntryFromAttribute(String entryName, EntityType entityType) {
-        return String.format(entityType.equals(EntityType.USER) ? userNameToDnTemplate : groupNameToDnTemplate, entryName);
+        return dnInterner.intern(namePrefix + entryName + (entityType.equals(EntityType.USER) ? usersSuffix : groupsSuffix));
     }
 
-    private static String firstGroupFromPattern(Pattern regExpPattern, String valueToScan) {
-        String result = null;
-
-        Matcher matcher = regExpPattern.matcher(valueToScan);
-        if (matcher.find()) {
-            result = matcher.group(1);
+    private boolean matches(String dn, String suffix) {
+        if (dn == null) {
+            return false;
         }
+        int suffixStart = dn.length() - suffix.length();
+        return suffixStart >= namePrefix.length()
+                && dn.regionMatches(true, 0, namePrefix, 0, namePrefix.length())
+                && dn.regionMatches(true, suffixStart, suffix, 0, suffix.length());
+    }
 
-        return result;
+    /**
+     * @return Name between the main name attribute and the base DN or null, if the DN has another format.
+     */
+    private String extractName(String dn, String suffix) {
+        return matches(dn, suffix) ? dn.substring(namePrefix.length(), dn.length() - suffix.length()) : null;
     }
 
 }
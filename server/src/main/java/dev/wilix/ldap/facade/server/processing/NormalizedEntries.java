@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Normalized values of the snapshot entries.
+ * Each attribute name is resolved to a slot once, so values are accessed by the entry position and the slot.
+ */
+final class NormalizedEntries {
+
+    private static final int NO_SLOT = -1;
+
+    private final Map<String, Integer> slotsByAttribute;
+    // Values by the entry position and the slot. Null if the entry does not contain the attribute.
+    private final String[][][] values;
+    private final int[] entriesCountBySlot;
+
+    private NormalizedEntries(Map<String, Integer> slotsByAttribute, String[][][] values, int[] entriesCountBySlot) {
+        this.slotsByAttribute = slotsByAttribute;
+        this.values = values;
+        this.entriesCountBySlot = entriesCountBySlot;
+    }
+
+    /**
+     * @param binaryAttributes Normalized names of attributes, that are not normalized and not available by slots.
+     */
+    static NormalizedEntries build(Entry[] entries, Set<String> binaryAttributes) {
+        Map<String, Integer> slotsByAttribute = new HashMap<>();
+        for (Entry entry : entries) {
+            for (Attribute attribute : entry.getAttributes()) {
+                String attributeName = ValueNormalizer.normalizeAttributeName(attribute.getName());
+                if ( ! binaryAttributes.contains(attributeName)) {
+                    slotsByAttribute.putIfAbsent(attributeName, slotsByAttribute.size());
+                }
+            }
+        }
+
+        String[][][] values = new String[entries.length][][];
+        int[] entriesCountBySlot = new int[slotsByAttribute.size()];
+        for (int position = 0; position < entries.length; position++) {
+            String[][] entryValues = new String[slotsByAttribute.size()][];
+            for (Attribute attribute : entries[position].getAttributes()) {
+                Integer slot = slotsByAttribute.get(ValueNormalizer.normalizeAttributeName(attribute.getName()));
+                if (slot != null) {
+                    entryValues[slot] = normalizeValues(attribute.getRawValues());
+                    entriesCountBySlot[slot]++;
+                }
+            }
+            values[position] = entryValues;
+        }
+
+        return new NormalizedEntries(slotsByAttribute, values, entriesCountBySlot);
+    }
+
+    private static String[] normalizeValues(ASN1OctetString[] rawValues) {
+        String[] result = new String[rawValues.length];
+        for (int i = 0; i < rawValues.length; i++) {
+            String value = rawValues[i].stringValue();
+            String normalizedValue = ValueNormalizer.normalizeValue(rawValues[i]);
+            // Most of values are normalized already, so there is no need to keep a copy of them.
+            result[i] = normalizedValue.equals(value) ? value : normalizedValue;
+        }
+        return result;
+    }
+
+    /**
+     * @return Slot of the attribute or -1, if no entry contains the attribute or the attribute is binary.
+     */
+    int getSlot(String normalizedAttributeName) {
+        return slotsByAttribute.getOrDefault(normalizedAttributeName, NO_SLOT);
+    }
+
+    /**
+     * @return Normalized values or null, if the entry does not contain the attribute.
+     */
+    String[] getValues(int position, int slot) {
+        return values[position][slot];
+    }
+
+    int countEntriesWith(int slot) {
+        return entriesCountBySlot[slot];
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * Position of paged search in the matching entries of a snapshot.
+ * Entries are found once, when the cursor is opened. Every next page is a slice of them.
+ */
+final class SearchCursor {
+
+    private final DirectorySnapshot snapshot;
+    private final SearchResultKey searchKey;
+    private final int[] positions;
+    private final EntryProjection projection;
+    private final boolean sizeLimitExceeded;
+    private int offset;
+
+    SearchCursor(DirectorySnapshot snapshot, SearchResultKey searchKey, int[] positions, EntryProjection projection,
+                 boolean sizeLimitExceeded) {
+        this.snapshot = snapshot;
+        this.searchKey = searchKey;
+        this.positions = positions;
+        this.projection = projection;
+        this.sizeLimitExceeded = sizeLimitExceeded;
+    }
+
+    /**
+     * Passes next entries to the consumer.
+     *
+     * @return Count of passed entries.
+     */
+    int sendPage(int pageSize, SearchEntryConsumer consumer) throws LDAPException {
+        int end = (int) Math.min((long) offset + pageSize, positions.length);
+        int start = offset;
+        while (offset < end) {
+            consumer.accept(projection.get(positions[offset]));
+            offset++;
+        }
+        return end - start;
+    }
+
+    boolean isExhausted() {
+        return offset >= positions.length;
+    }
+
+    /**
+     * @return True, if there were more matching entries than the size limit allows. They are not in the cursor.
+     */
+    boolean isSizeLimitExceeded() {
+        return sizeLimitExceeded;
+    }
+
+    int getRemaining() {
+        return positions.length - offset;
+    }
+
+    SearchResultKey getSearchKey() {
+        return searchKey;
+    }
+
+    DirectorySnapshot getSnapshot() {
+        return snapshot;
+    }
+}
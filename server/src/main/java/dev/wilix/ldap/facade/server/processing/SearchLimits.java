@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.protocol.SearchRequestProtocolOp;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size and time limits of one search. Limits of the request are reduced to the server-wide maximums.
+ * Zero limit means no limit.
+ */
+final class SearchLimits {
+
+    // The clock is read only once per this count of checks, since the most checks are very frequent.
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private final int sizeLimit;
+    private final long deadlineNanos;
+    private final boolean timeLimited;
+    private int timeChecksCount;
+
+    private SearchLimits(int sizeLimit, int timeLimitSeconds) {
+        this.sizeLimit = sizeLimit;
+        this.timeLimited = timeLimitSeconds > 0;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeLimitSeconds);
+    }
+
+    static SearchLimits of(SearchRequestProtocolOp request, int maxSizeLimit, int maxTimeLimitSeconds) {
+        return new SearchLimits(
+                reduce(request.getSizeLimit(), maxSizeLimit),
+                reduce(request.getTimeLimit(), maxTimeLimitSeconds));
+    }
+
+    private static int reduce(int requestedLimit, int maxLimit) {
+        if (requestedLimit <= 0) {
+            return Math.max(maxLimit, 0);
+        }
+        return maxLimit <= 0 ? requestedLimit : Math.min(requestedLimit, maxLimit);
+    }
+
+    /**
+     * Must be called before passing one more entry to the client.
+     *
+     * @param passedEntriesCount Count of entries already passed.
+     */
+    void checkSize(int passedEntriesCount) throws LDAPException {
+        if (sizeLimit > 0 && passedEntriesCount >= sizeLimit) {
+            throw new LDAPException(ResultCode.SIZE_LIMIT_EXCEEDED,
+                    "Search found more than " + sizeLimit + " entries.");
+        }
+    }
+
+    /**
+     * Must be called regularly while the search is in progress.
+     */
+    void checkTime() throws LDAPException {
+        if (timeLimited && ++timeChecksCount % TIME_CHECK_INTERVAL == 0) {
+            checkTimeNow();
+        }
+    }
+
+    void checkTimeNow() throws LDAPException {
+        if (timeLimited && System.nanoTime() - deadlineNanos > 0) {
+            throw new LDAPException(ResultCode.TIME_LIMIT_EXCEEDED, "Search did not complete in the time limit.");
+        }
+    }
+
+}
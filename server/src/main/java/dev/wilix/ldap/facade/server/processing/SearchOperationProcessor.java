@@ -16,21 +16,42 @@
 
 package dev.wilix.ldap.facade.server.processing;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.unboundid.ldap.listener.SearchEntryParer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.unboundid.ldap.protocol.SearchRequestProtocolOp;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
 import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.controls.SortKey;
 import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.api.CompactEntry;
 import dev.wilix.ldap.facade.api.DataStorage;
+import dev.wilix.ldap.facade.api.EntryChanges;
+import dev.wilix.ldap.facade.api.SearchPredicate;
+import dev.wilix.ldap.facade.api.SearchPushdown;
+import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * TODO Move names of member and memberOf attributes to ldap configuration.
@@ -40,60 +61,633 @@ public class SearchOperationProcessor {
     private static final Logger LOG = LoggerFactory.getLogger(SearchOperationProcessor.class);
 
     public static final String[] EMPTY_STRING_ARRAY = new String[0];
+    static final String USER_AVATAR_ATTRIBUTE_NAME = "jpegPhoto";
+    // Precomputed ordering is walked, only when at least this share of the snapshot entries is found.
+    // Fewer found entries are sorted, because it is cheaper than walking the ordering of all entries.
+    private static final int MIN_SHARE_TO_WALK_ORDERING = 32;
 
     private final DataStorage dataStorage;
     private final LdapNamingHelper namingHelper;
+    private final KnownUsersFilter knownUsersFilter;
+    private final List<String> indexedAttributes;
+    private final boolean suffixIndexesEnabled;
+    private final List<String> sortedAttributes;
+    private final int projectionsCacheSize;
+    private final FilterCompiler filterCompiler;
+    private final int searchResultsCacheMaxEntriesPerResult;
+    private final int searchSizeLimit;
+    private final int searchTimeLimitSeconds;
+    private final boolean searchPushdownEnabled;
+    private final String usersBaseDn;
+    private final String mainNameAttribute;
 
-    private final Cache<Authentication, List<Entry>> entitiesCache;
+    private final LoadingCache<Authentication, DirectorySnapshot> entitiesCache;
+    private final Cache<SearchResultKey, List<Entry>> searchResultsCache;
+    // Snapshots by the hash of their content. Authentications, which see the same entities, share one snapshot.
+    private final Cache<HashCode, DirectorySnapshot> snapshotsByContent = Caffeine.newBuilder()
+            .weakValues()
+            .build();
+    // Sync tokens of loaded snapshots. Snapshots are updated by changes since them, when the storage tracks changes.
+    // Tokens outlive expired entities, so the expired snapshot is updated instead of loading all entities again.
+    private final Cache<Authentication, SyncState> syncStates;
+    // Authentications, which have the snapshot of the version in the entities cache. Loaded snapshots are added here
+    // and removed ones are taken out, so the removal listener knows, whether the snapshot is still used.
+    private final Map<Long, Set<Authentication>> snapshotHolders = new ConcurrentHashMap<>();
+    // Keys of cached search results by the version of the snapshot, they were found in.
+    private final Map<Long, Set<SearchResultKey>> resultKeysByVersion = new ConcurrentHashMap<>();
 
-    public SearchOperationProcessor(DataStorage dataStorage, LdapNamingHelper namingHelper, int searchCacheExpirationMinutes) {
+    public SearchOperationProcessor(DataStorage dataStorage, LdapNamingHelper namingHelper,
+                                    LdapConfigurationProperties ldapProperties, KnownUsersFilter knownUsersFilter,
+                                    Executor refreshExecutor) {
+        this(dataStorage, namingHelper, ldapProperties, knownUsersFilter, refreshExecutor, Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker Time source of expiration and refresh of entities.
+     */
+    SearchOperationProcessor(DataStorage dataStorage, LdapNamingHelper namingHelper,
+                             LdapConfigurationProperties ldapProperties, KnownUsersFilter knownUsersFilter,
+                             Executor refreshExecutor, Ticker ticker) {
         this.dataStorage = dataStorage;
         this.namingHelper = namingHelper;
+        this.knownUsersFilter = knownUsersFilter;
+        this.indexedAttributes = List.copyOf(ldapProperties.getIndexedAttributes());
+        this.suffixIndexesEnabled = ldapProperties.isSuffixIndexesEnabled();
+        this.sortedAttributes = List.copyOf(ldapProperties.getSortedAttributes());
+        this.projectionsCacheSize = ldapProperties.getProjectionsCacheSize();
+        this.filterCompiler = new FilterCompiler(ldapProperties.getCompiledFilterCacheSize());
+        this.searchResultsCacheMaxEntriesPerResult = ldapProperties.getSearchResultsCacheMaxEntriesPerResult();
+        this.searchSizeLimit = ldapProperties.getSearchSizeLimit();
+        this.searchTimeLimitSeconds = ldapProperties.getSearchTimeLimitSeconds();
+        this.searchPushdownEnabled = ldapProperties.isSearchPushdownEnabled() && dataStorage instanceof SearchPushdown;
+        this.usersBaseDn = ldapProperties.getUsersBaseDn();
+        this.mainNameAttribute = ldapProperties.getMainNameAttribute();
+
+        // Results are bounded by the estimated size of their entries in kilobytes, as entities are.
+        // Projected entries may be shared with the projections of the snapshot, so the real memory usage is less.
+        searchResultsCache = Caffeine.newBuilder()
+                .maximumWeight(ldapProperties.getSearchResultsCacheMaxSizeMb() * 1024L)
+                .<SearchResultKey, List<Entry>>weigher((key, entries) -> weighResults(entries))
+                .removalListener(this::onSearchResultsRemoved)
+                .recordStats()
+                .build();
 
-        entitiesCache = CacheBuilder.newBuilder()
-                .expireAfterWrite(searchCacheExpirationMinutes, TimeUnit.MINUTES)
+        // Entities are bounded by their estimated size in kilobytes. Rarely used entities are evicted first.
+        // Snapshots shared by authentications are counted for each of them, so the real memory usage is less.
+        var entitiesCacheBuilder = Caffeine.newBuilder()
+                .expireAfterWrite(ldapProperties.getSearchCacheExpirationMinutes(), TimeUnit.MINUTES)
+                .maximumWeight(ldapProperties.getSearchCacheMaxSizeMb() * 1024L)
+                .<Authentication, DirectorySnapshot>weigher((authentication, snapshot) ->
+                        (int) Math.min(Integer.MAX_VALUE, snapshot.getEstimatedSizeBytes() / 1024 + 1))
+                .removalListener(this::onSnapshotRemoved)
+                .executor(refreshExecutor)
+                .ticker(ticker)
+                .recordStats();
+
+        if (ldapProperties.getSearchCacheRefreshMinutes() > 0) {
+            // Searches get the current entities, while new ones are loaded in background.
+            // Entities older than the expiration time are not returned, so searches wait for them.
+            entitiesCacheBuilder
+                    .refreshAfterWrite(ldapProperties.getSearchCacheRefreshMinutes(), TimeUnit.MINUTES);
+        }
+
+        syncStates = Caffeine.newBuilder()
+                .expireAfterWrite(2L * ldapProperties.getSearchCacheExpirationMinutes(), TimeUnit.MINUTES)
+                .ticker(ticker)
                 .build();
+
+        entitiesCache = entitiesCacheBuilder.build(new CacheLoader<>() {
+            @Override
+            public DirectorySnapshot load(Authentication authentication) throws LDAPException {
+                // Expired entities are updated by changes, as well as refreshed ones.
+                SyncState syncState = syncStates.getIfPresent(authentication);
+                return addHolder(authentication, syncState == null
+                        ? loadSnapshot(authentication)
+                        : reloadSnapshot(authentication, syncState.snapshot));
+            }
+
+            @Override
+            public DirectorySnapshot reload(Authentication authentication, DirectorySnapshot oldSnapshot)
+                    throws LDAPException {
+                return addHolder(authentication, reloadSnapshot(authentication, oldSnapshot));
+            }
+        });
+    }
+
+    public CacheStats getEntitiesCacheStats() {
+        return entitiesCache.stats();
     }
 
-    List<Entry> doSearch(Authentication authentication, SearchRequestProtocolOp request) throws LDAPException {
+    public CacheStats getSearchResultsCacheStats() {
+        return searchResultsCache.stats();
+    }
+
+    /**
+     * Searches entries and passes them to the consumer as soon as they are found.
+     * The search stops with an exception, as soon as the size or the time limit is exceeded.
+     *
+     * @param sortKeys Keys to sort found entries by. Empty list keeps the order of the storage.
+     * @return Count of found entries.
+     */
+    int doSearch(Authentication authentication, SearchRequestProtocolOp request, List<SortKey> sortKeys,
+                 SearchEntryConsumer consumer) throws LDAPException {
+
+        SearchLimits limits = SearchLimits.of(request, searchSizeLimit, searchTimeLimitSeconds);
+        DN baseDn = new DN(request.getBaseDN());
+        DirectorySnapshot storageSnapshot = findInStorage(authentication, baseDn, request, sortKeys);
+        DirectorySnapshot snapshot = storageSnapshot != null ? storageSnapshot : getSnapshot(authentication);
+        limits.checkTimeNow();
+
+        var resultKey = createSearchKey(snapshot, baseDn, request, sortKeys);
+        List<Entry> cachedEntries = searchResultsCache.getIfPresent(resultKey);
+        if (cachedEntries != null) {
+            LOG.debug("Search results are taken from cache for {}", resultKey);
+            for (int i = 0; i < cachedEntries.size(); i++) {
+                limits.checkSize(i);
+                consumer.accept(cachedEntries.get(i));
+            }
+            return cachedEntries.size();
+        }
 
-        List<Entry> allEntries;
+        // Found entries are remembered for the cache only while there are not too many of them.
+        var collector = new SearchEntryConsumer() {
+            List<Entry> entries = new ArrayList<>();
+            int count;
+
+            @Override
+            public void accept(Entry entry) throws LDAPException {
+                limits.checkSize(count);
+                consumer.accept(entry);
+                count++;
+
+                if (entries != null) {
+                    if (entries.size() < searchResultsCacheMaxEntriesPerResult) {
+                        entries.add(entry);
+                    } else {
+                        entries = null;
+                    }
+                }
+            }
+        };
+
+        EntryProjection projection = snapshot.getProjection(request.getAttributes(), request.typesOnly());
+        findEntries(snapshot, baseDn, request, sortKeys, limits, position -> collector.accept(projection.get(position)));
+
+        // Users found by the storage are asked again, so their results would not be requested.
+        if (collector.entries != null && storageSnapshot == null) {
+            resultKeysByVersion.compute(resultKey.getSnapshotVersion(), (version, keys) -> {
+                Set<SearchResultKey> result = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                result.add(resultKey);
+                return result;
+            });
+            searchResultsCache.put(resultKey, Collections.unmodifiableList(collector.entries));
+        }
+
+        return collector.count;
+    }
+
+    /**
+     * Finds all entries matching the request and remembers their positions for reading them page by page.
+     * The size limit applies to the whole search. Only entries within it are remembered.
+     */
+    SearchCursor openCursor(Authentication authentication, SearchRequestProtocolOp request,
+                            List<SortKey> sortKeys) throws LDAPException {
+        SearchLimits limits = SearchLimits.of(request, searchSizeLimit, searchTimeLimitSeconds);
+        DN baseDn = new DN(request.getBaseDN());
+        DirectorySnapshot snapshot = findInStorage(authentication, baseDn, request, sortKeys);
+        if (snapshot == null) {
+            snapshot = getSnapshot(authentication);
+        }
+        limits.checkTimeNow();
+
+        var positions = new int[snapshot.size()];
+        var count = new int[1];
+        boolean sizeLimitExceeded = false;
         try {
-            allEntries = entitiesCache.get(authentication, () -> doSearchInternal(authentication).stream()
-                    .map(info -> prepareSearchResultEntry(info.get("dn").get(0), info))
-                    .collect(Collectors.toList()));
-        } catch (ExecutionException e) {
-            // FIXME Handle or generate exception more correctly. Maybe add a log.
-            throw new RuntimeException(e.getCause());
+            findEntries(snapshot, baseDn, request, sortKeys, limits, position -> {
+                limits.checkSize(count[0]);
+                positions[count[0]++] = position;
+            });
+        } catch (LDAPException ex) {
+            if (ex.getResultCode() != ResultCode.SIZE_LIMIT_EXCEEDED) {
+                throw ex;
+            }
+            sizeLimitExceeded = true;
         }
 
-        List<Entry> resultEntries = new ArrayList<>(allEntries.size());
-        SearchEntryParer parer = new SearchEntryParer(request.getAttributes(), null);
-        for (Entry resultEntry : allEntries) {
+        return new SearchCursor(snapshot, createSearchKey(snapshot, baseDn, request, sortKeys),
+                Arrays.copyOf(positions, count[0]), snapshot.getProjection(request.getAttributes(), request.typesOnly()),
+                sizeLimitExceeded);
+    }
+
+    /**
+     * Checks that the request continues the same search, as the cursor was opened for.
+     */
+    boolean isOpenedFor(SearchCursor cursor, SearchRequestProtocolOp request,
+                        List<SortKey> sortKeys) throws LDAPException {
+        return cursor.getSearchKey().equals(
+                createSearchKey(cursor.getSnapshot(), new DN(request.getBaseDN()), request, sortKeys));
+    }
+
+    private DirectorySnapshot getSnapshot(Authentication authentication) {
+        return entitiesCache.get(authentication);
+    }
+
+    /**
+     * Users, which the storage finds itself, while entities are not loaded for the authentication.
+     * Only searches, that can find nothing but users, are passed to the storage.
+     *
+     * @return Snapshot of found users or null, if entities have to be loaded for the search.
+     */
+    private DirectorySnapshot findInStorage(Authentication authentication, DN baseDn, SearchRequestProtocolOp request,
+                                            List<SortKey> sortKeys) throws LDAPException {
+        if ( ! searchPushdownEnabled || entitiesCache.asMap().containsKey(authentication)
+                || ! (baseDn.isDescendantOf(usersBaseDn, true) || isUsersFilter(request.getFilter()))) {
+            return null;
+        }
+
+        SearchPredicate predicate = FilterPushdown.translate(request.getFilter());
+        if (predicate == null) {
+            return null;
+        }
+
+        Optional<List<CompactEntry>> users = ((SearchPushdown) dataStorage).findUsers(authentication, predicate,
+                getNeededAttributes(request, sortKeys));
+        if (users.isEmpty()) {
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<>(users.get().size());
+        for (CompactEntry user : users.get()) {
+            entries.add(toSearchResultEntry(postProcessEntryInfo(user, EntityType.USER)));
+        }
+        LOG.debug("{} users are found by the storage for {}", entries.size(), predicate);
+
+        // Entities are loaded in background meanwhile, so next searches of the authentication are served by the cache.
+        // Loads of the same authentication are not repeated, while one is in progress.
+        entitiesCache.refresh(authentication);
+
+        // Few found users are scanned without indexes.
+        return DirectorySnapshot.build(entries, List.of(), false, List.of(), 1);
+    }
+
+    /**
+     * Checks that the filter matches only entries having the object class of users.
+     */
+    private boolean isUsersFilter(Filter filter) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_EQUALITY:
+                return filter.getAttributeName().equalsIgnoreCase("objectClass")
+                        && filter.getAssertionValue().equalsIgnoreCase(namingHelper.getClassName(EntityType.USER));
+            case Filter.FILTER_TYPE_AND:
+                for (Filter component : filter.getComponents()) {
+                    if (isUsersFilter(component)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Requested attributes with ones, that are needed to check the filter, to sort and to make dn of entries.
+     */
+    private List<String> getNeededAttributes(SearchRequestProtocolOp request, List<SortKey> sortKeys) {
+        if (request.getAttributes().isEmpty() || request.getAttributes().contains("*")) {
+            return List.of();
+        }
+
+        Set<String> result = new LinkedHashSet<>(request.getAttributes());
+        FilterPushdown.collectAttributes(request.getFilter(), result);
+        sortKeys.forEach(sortKey -> result.add(sortKey.getAttributeName()));
+        result.add(mainNameAttribute);
+        result.add("memberof");
+        return List.copyOf(result);
+    }
+
+    /**
+     * Entries are read from the storage one by one. Each of them is hashed and converted to the result entry
+     * right away, so entries of the storage are not held in memory along with result entries.
+     */
+    private DirectorySnapshot loadSnapshot(Authentication authentication) {
+        // Changes made during the search are applied again on the next reload, that does not harm.
+        String syncToken = dataStorage.getSyncToken(authentication);
+        List<Entry> entries = new ArrayList<>();
+        Hasher contentHasher = Hashing.sha256().newHasher();
+
+        doSearchInternal(authentication, info -> {
+            Entry entry = toSearchResultEntry(info);
+            hashEntry(contentHasher, entry);
+            entries.add(entry);
+        });
+
+        // Entities of an authentication, that does not see all users, would hide other users from binds.
+        if (dataStorage.seesAllUsers(authentication)) {
+            updateKnownUsers(entries);
+        }
+        DirectorySnapshot snapshot = snapshotsByContent.get(contentHasher.hash(), hash -> DirectorySnapshot.build(
+                entries, indexedAttributes, suffixIndexesEnabled, sortedAttributes, projectionsCacheSize));
+        if (syncToken != null) {
+            syncStates.put(authentication, new SyncState(snapshot, syncToken));
+        }
+
+        LOG.debug("Entities cache {}, search results cache {}", entitiesCache.stats(), searchResultsCache.stats());
+        return snapshot;
+    }
+
+    /**
+     * Applies changes since the snapshot was loaded. Entities are loaded again, when the storage does not track
+     * changes or does not know them anymore.
+     */
+    private DirectorySnapshot reloadSnapshot(Authentication authentication,
+                                             DirectorySnapshot oldSnapshot) throws LDAPException {
+        SyncState syncState = syncStates.getIfPresent(authentication);
+        if (syncState == null || syncState.snapshot != oldSnapshot) {
+            return loadSnapshot(authentication);
+        }
+
+        Optional<EntryChanges> changes = dataStorage.getChangesSince(authentication, syncState.token);
+        if (changes.isEmpty()) {
+            LOG.debug("Changes since {} are unknown, entities are loaded again", syncState.token);
+            return loadSnapshot(authentication);
+        }
+
+        DirectorySnapshot snapshot = changes.get().isEmpty() ? oldSnapshot : applyChanges(oldSnapshot, changes.get());
+        syncStates.put(authentication, new SyncState(snapshot, changes.get().getSyncToken()));
+        return snapshot;
+    }
+
+    /**
+     * Builds a new snapshot from entries of the old one with changed entries replaced and deleted ones removed.
+     * Entries are not loaded and post-processed again, only indexes are rebuilt.
+     * Added entries are placed after the rest of them.
+     * Authentications, which get the same changes for the same snapshot, share the new one by its content.
+     */
+    private DirectorySnapshot applyChanges(DirectorySnapshot snapshot, EntryChanges changes) throws LDAPException {
+        Map<DN, Entry> changedEntries = new LinkedHashMap<>();
+        for (CompactEntry user : changes.getChangedUsers()) {
+            Entry entry = toSearchResultEntry(postProcessEntryInfo(user, EntityType.USER));
+            changedEntries.put(entry.getParsedDN(), entry);
+        }
+        for (CompactEntry group : changes.getChangedGroups()) {
+            Entry entry = toSearchResultEntry(postProcessEntryInfo(group, EntityType.GROUP));
+            changedEntries.put(entry.getParsedDN(), entry);
+        }
+
+        Set<DN> deletedDns = new HashSet<>();
+        for (String userName : changes.getDeletedUsers()) {
+            deletedDns.add(new DN(namingHelper.generateDnForEntryFromAttribute(userName, EntityType.USER)));
+        }
+        for (String groupName : changes.getDeletedGroups()) {
+            deletedDns.add(new DN(namingHelper.generateDnForEntryFromAttribute(groupName, EntityType.GROUP)));
+        }
+
+        List<Entry> entries = new ArrayList<>(snapshot.size() + changedEntries.size());
+        Hasher contentHasher = Hashing.sha256().newHasher();
+        for (int position = 0; position < snapshot.size(); position++) {
+            Entry entry = snapshot.get(position);
+            DN dn = entry.getParsedDN();
+            if ( ! deletedDns.contains(dn)) {
+                Entry changedEntry = changedEntries.remove(dn);
+                Entry resultEntry = changedEntry == null ? entry : changedEntry;
+                hashEntry(contentHasher, resultEntry);
+                entries.add(resultEntry);
+            }
+        }
+        for (Entry addedEntry : changedEntries.values()) {
+            hashEntry(contentHasher, addedEntry);
+            entries.add(addedEntry);
+        }
+
+        LOG.debug("Snapshot is updated by {} changed and {} deleted entries",
+                changes.getChangedUsers().size() + changes.getChangedGroups().size(), deletedDns.size());
+
+        // Changes are seen by one authentication, so they only add names. Full loads replace them.
+        knownUsersFilter.add(extractUserNames(entries.subList(entries.size() - changedEntries.size(), entries.size())));
+        return snapshotsByContent.get(contentHasher.hash(), hash -> DirectorySnapshot.build(
+                entries, indexedAttributes, suffixIndexesEnabled, sortedAttributes, projectionsCacheSize));
+    }
+
+    private void updateKnownUsers(List<Entry> entries) {
+        knownUsersFilter.update(extractUserNames(entries));
+    }
+
+    private List<String> extractUserNames(List<Entry> entries) {
+        List<String> userNames = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (namingHelper.isUserDn(entry.getDN())) {
+                userNames.add(namingHelper.extractUserNameFromDn(entry.getDN()));
+            }
+        }
+        return userNames;
+    }
+
+    /**
+     * Adds the entry to the hash of entries in their order. Loaded and updated snapshots with the same entries
+     * get the same hash, because entries are built the same way.
+     */
+    private static void hashEntry(Hasher hasher, Entry entry) {
+        hasher.putInt(entry.getDN().length()).putString(entry.getDN(), StandardCharsets.UTF_8);
+        hasher.putInt(entry.getAttributes().size());
+        for (Attribute attribute : entry.getAttributes()) {
+            hasher.putInt(attribute.getName().length()).putString(attribute.getName(), StandardCharsets.UTF_8);
+            byte[][] values = attribute.getValueByteArrays();
+            hasher.putInt(values.length);
+            for (byte[] value : values) {
+                hasher.putInt(value.length).putBytes(value);
+            }
+        }
+    }
+
+    private SearchResultKey createSearchKey(DirectorySnapshot snapshot, DN baseDn, SearchRequestProtocolOp request,
+                                            List<SortKey> sortKeys) {
+        String sortOrder = sortKeys.stream()
+                .map(sortKey -> (sortKey.reverseOrder() ? "-" : "") +
+                        ValueNormalizer.normalizeAttributeName(sortKey.getAttributeName()))
+                .collect(Collectors.joining(","));
+
+        return new SearchResultKey(snapshot.getVersion(), baseDn.toNormalizedString(),
+                request.getScope().intValue(), request.getFilter().toNormalizedString(),
+                EntryProjection.createKey(request.getAttributes(), request.typesOnly()), sortOrder);
+    }
+
+    /**
+     * @return Estimated size of found entries in kilobytes, at least 1.
+     */
+    private static int weighResults(List<Entry> entries) {
+        long sizeBytes = 0;
+        for (Entry entry : entries) {
+            sizeBytes += DirectorySnapshot.estimateSize(entry);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, sizeBytes / 1024 + 1);
+    }
+
+    /**
+     * Passes positions of entries matching the request to the consumer in the requested order.
+     * Precomputed ordering of the snapshot is walked, when entries are sorted by a single attribute having it
+     * and not too few entries are found.
+     */
+    private void findEntries(DirectorySnapshot snapshot, DN baseDn, SearchRequestProtocolOp request,
+                             List<SortKey> sortKeys, SearchLimits limits, PositionConsumer consumer) throws LDAPException {
+        if (sortKeys.isEmpty()) {
+            findEntries(snapshot, baseDn, request, limits, consumer);
+            return;
+        }
+
+        var positions = new int[snapshot.size()];
+        var count = new int[1];
+        findEntries(snapshot, baseDn, request, limits, position -> positions[count[0]++] = position);
+
+        // Both ways give the same order: equal entries are left in the order of the snapshot.
+        if (sortKeys.size() == 1 && (long) count[0] * MIN_SHARE_TO_WALK_ORDERING >= snapshot.size()) {
+            int[] ordering = snapshot.getOrdering(sortKeys.get(0).getAttributeName(), sortKeys.get(0).reverseOrder());
+            if (ordering != null) {
+                BitSet matchingPositions = new BitSet(snapshot.size());
+                for (int i = 0; i < count[0]; i++) {
+                    matchingPositions.set(positions[i]);
+                }
+                for (int position : ordering) {
+                    limits.checkTime();
+                    if (matchingPositions.get(position)) {
+                        consumer.accept(position);
+                    }
+                }
+                return;
+            }
+        }
+
+        int[] sortedPositions = EntryOrdering.sort(Arrays.copyOf(positions, count[0]),
+                snapshot.getNormalizedEntries(), sortKeys);
+        limits.checkTimeNow();
+        for (int position : sortedPositions) {
+            consumer.accept(position);
+        }
+    }
+
+    /**
+     * Passes positions of entries matching the request to the consumer in the order of the snapshot.
+     */
+    private void findEntries(DirectorySnapshot snapshot, DN baseDn, SearchRequestProtocolOp request,
+                             SearchLimits limits, PositionConsumer consumer) throws LDAPException {
+        // Only entries of the requested branch are visited.
+        BitSet candidates = snapshot.getDnTree().findInScope(baseDn, request.getScope());
+        boolean scopeResolved = candidates != null;
+        if ( ! scopeResolved) {
+            candidates = new BitSet(snapshot.size());
+            candidates.set(0, snapshot.size());
+        }
+
+        // Indexes narrow the set of entries to check. Without them all entries of the branch are scanned.
+        BitSet filterCandidates = SearchPlanner.findCandidates(request.getFilter(), snapshot);
+        if (filterCandidates != null) {
+            candidates.and(filterCandidates);
+        }
+
+        EntryMatcher filterMatcher = filterCompiler.compile(request.getFilter()).bind(snapshot);
+
+        for (int position = candidates.nextSetBit(0); position >= 0; position = candidates.nextSetBit(position + 1)) {
+            limits.checkTime();
+            Entry resultEntry = snapshot.get(position);
             // Filtering records according to the request.
-            if (resultEntry.matchesBaseAndScope(request.getBaseDN(), request.getScope()) &&
-                    request.getFilter().matchesEntry(resultEntry)) {
-                resultEntries.add(parer.pareEntry(resultEntry));
+            if ((scopeResolved || resultEntry.matchesBaseAndScope(baseDn, request.getScope())) &&
+                    filterMatcher.matches(position)) {
+                consumer.accept(position);
             } else {
                 LOG.debug("Entry not matches {} to filter {}", resultEntry, request.getFilter());
             }
         }
+    }
+
+    @FunctionalInterface
+    private interface PositionConsumer {
+        void accept(int position) throws LDAPException;
+    }
+
+    /**
+     * Token of the storage, since which changes are applied to the snapshot.
+     */
+    private static final class SyncState {
+        private final DirectorySnapshot snapshot;
+        private final String token;
+
+        SyncState(DirectorySnapshot snapshot, String token) {
+            this.snapshot = snapshot;
+            this.token = token;
+        }
+    }
+
+    /**
+     * Tokens of evicted or invalidated entities are forgotten too. Tokens of expired and refreshed ones are kept.
+     */
+    private void onSnapshotRemoved(Authentication authentication, DirectorySnapshot snapshot, RemovalCause cause) {
+        if (authentication != null && cause != RemovalCause.EXPIRED && cause != RemovalCause.REPLACED) {
+            syncStates.invalidate(authentication);
+        }
+        invalidateSearchResults(authentication, snapshot, cause);
+    }
+
+    private DirectorySnapshot addHolder(Authentication authentication, DirectorySnapshot snapshot) {
+        snapshotHolders.compute(snapshot.getVersion(), (version, holders) -> {
+            Set<Authentication> result = holders == null ? new HashSet<>() : holders;
+            result.add(authentication);
+            return result;
+        });
+        return snapshot;
+    }
 
-        return resultEntries;
+    /**
+     * @return True, if no other authentication has the snapshot in the entities cache.
+     */
+    private boolean removeHolder(Authentication authentication, DirectorySnapshot snapshot) {
+        return snapshotHolders.computeIfPresent(snapshot.getVersion(), (version, holders) -> {
+            holders.remove(authentication);
+            return holders.isEmpty() ? null : holders;
+        }) == null;
     }
 
-    private List<Map<String, List<String>>> doSearchInternal(Authentication authentication) {
-        List<Map<String, List<String>>> result = new ArrayList<>();
+    /**
+     * Results found in the snapshot would not be requested again, when the snapshot is evicted or reloaded.
+     * Snapshot may still be shared by other authentications, then its results are kept.
+     */
+    private void invalidateSearchResults(Authentication authentication, DirectorySnapshot snapshot, RemovalCause cause) {
+        if (snapshot == null || ! removeHolder(authentication, snapshot)) {
+            return;
+        }
 
-        dataStorage.getAllUsers(authentication).stream()
-                 .map(user -> postProcessEntryInfo(user, EntityType.USER))
-                .forEach(result::add);
+        Set<SearchResultKey> resultKeys = resultKeysByVersion.remove(snapshot.getVersion());
+        if (resultKeys != null) {
+            searchResultsCache.invalidateAll(resultKeys);
+        }
+    }
+
+    /**
+     * Keys of results, that are evicted by size, are taken out of the index. Results found again are indexed again.
+     */
+    private void onSearchResultsRemoved(SearchResultKey key, List<Entry> entries, RemovalCause cause) {
+        if (key == null || cause == RemovalCause.REPLACED || searchResultsCache.asMap().containsKey(key)) {
+            return;
+        }
+        resultKeysByVersion.computeIfPresent(key.getSnapshotVersion(), (version, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
 
-        dataStorage.getAllGroups(authentication).stream()
-                .map(group -> postProcessEntryInfo(group, EntityType.GROUP))
-                .forEach(result::add);
+    /**
+     * Passes post-processed users and then groups to the consumer, as soon as the storage returns them.
+     */
+    private void doSearchInternal(Authentication authentication, Consumer<CompactEntry> consumer) {
+        try (Stream<CompactEntry> users = dataStorage.streamUserEntries(authentication)) {
+            users.map(user -> postProcessEntryInfo(user, EntityType.USER))
+                    .forEachOrdered(consumer);
+        }
 
-        return result;
+        try (Stream<CompactEntry> groups = dataStorage.streamGroupEntries(authentication)) {
+            groups.map(group -> postProcessEntryInfo(group, EntityType.GROUP))
+                    .forEachOrdered(consumer);
+        }
     }
 
     /**
@@ -102,43 +696,54 @@ public class SearchOperationProcessor {
      * - Adding dn attribute, if it does not exist
      * - Converts the group / member name format to dn
      * - Adding object class attribute.
+     * Changed attributes are packed with the rest of them into a new entry at once.
      */
-    private Map<String, List<String>> postProcessEntryInfo(Map<String, List<String>> info, EntityType entityType) {
-        // Wrapping result, because info may be immutable.
-        var processedInfo = new HashMap<>(info);
+    private CompactEntry postProcessEntryInfo(CompactEntry info, EntityType entityType) {
+        var processedInfo = info.toBuilder();
 
         // Converts the group / member name format to dn
-        addDnName(processedInfo, entityType);
+        addDnName(info, processedInfo, entityType);
         // Computes dn, if it does not exist.
-        processedInfo.computeIfAbsent("dn", s -> List.of(namingHelper.generateDnForEntry(info, entityType)));
+        if ( ! info.hasAttribute("dn")) {
+            processedInfo.put("dn", List.of(namingHelper.generateDnForEntry(info, entityType)));
+        }
         // Adding object class attribute, if it does not exist.
-        processedInfo.computeIfAbsent("objectClass", s -> List.of(namingHelper.getClassName(entityType)));
+        if ( ! info.hasAttribute("objectClass")) {
+            processedInfo.put("objectClass", List.of(namingHelper.getClassName(entityType)));
+        }
 
-        return processedInfo;
+        return processedInfo.build();
     }
 
-    private void addDnName(Map<String, List<String>> info, EntityType entityType) {
+    private void addDnName(CompactEntry info, CompactEntry.Builder processedInfo, EntityType entityType) {
         String key = entityType.equals(EntityType.USER) ? "memberof" : "member";
 
-        List<String> result = info.get(key).stream()
-                .map(value -> namingHelper.generateDnForEntryFromAttribute(value,
-                        entityType.equals(EntityType.USER) ? EntityType.GROUP : EntityType.USER))
-                .collect(Collectors.toList());
-        info.put(key, result);
+        List<String> names = info.get(key);
+        if (names == null) {
+            return;
+        }
+        var result = new String[names.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = namingHelper.generateDnForEntryFromAttribute(names.get(i),
+                    entityType.equals(EntityType.USER) ? EntityType.GROUP : EntityType.USER);
+        }
+        processedInfo.put(key, Arrays.asList(result));
+    }
+
+    private Entry toSearchResultEntry(CompactEntry info) {
+        return prepareSearchResultEntry(info.getFirst("dn"), info);
     }
 
-    private Entry prepareSearchResultEntry(String entryDn, Map<String, List<String>> info) {
+    private Entry prepareSearchResultEntry(String entryDn, CompactEntry info) {
         // Preparing ldap answer.
         Entry entry = new Entry(entryDn);
-        for (String requestedAttributeName : info.keySet()) {
-            final List<String> attributeValues = info
-                    .getOrDefault(requestedAttributeName, Collections.emptyList());
+        for (String requestedAttributeName : info.getAttributeNames()) {
+            final List<String> attributeValues = info.get(requestedAttributeName);
             entry.addAttribute(requestedAttributeName, attributeValues.toArray(EMPTY_STRING_ARRAY));
 
-            String userAvatarAttributeName = "jpegPhoto";
-            if (info.containsKey(userAvatarAttributeName)) {
-                byte[] avatarByteArray = Base64.getDecoder().decode(info.get(userAvatarAttributeName).get(0));
-                entry.setAttribute(userAvatarAttributeName, avatarByteArray);
+            if (info.hasAttribute(USER_AVATAR_ATTRIBUTE_NAME)) {
+                byte[] avatarByteArray = Base64.getDecoder().decode(info.getFirst(USER_AVATAR_ATTRIBUTE_NAME));
+                entry.setAttribute(USER_AVATAR_ATTRIBUTE_NAME, avatarByteArray);
             }
         }
         return entry;
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.matchingrules.MatchingRule;
+import com.unboundid.ldap.sdk.Filter;
+
+import java.util.BitSet;
+
+/**
+ * Selects candidate entries for the search filter using indexes of the snapshot.
+ * The candidates are a superset of matching entries, so each of them still has to be checked against the filter.
+ */
+final class SearchPlanner {
+
+    private SearchPlanner() {
+    }
+
+    /**
+     * @return Positions of candidate entries or null, if the filter can not be resolved by indexes
+     * and all entries have to be scanned.
+     */
+    static BitSet findCandidates(Filter filter, DirectorySnapshot snapshot) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+                return findAndCandidates(filter.getComponents(), snapshot);
+            case Filter.FILTER_TYPE_OR:
+                return findOrCandidates(filter.getComponents(), snapshot);
+            case Filter.FILTER_TYPE_EQUALITY:
+                return findEqualityCandidates(filter, snapshot);
+            case Filter.FILTER_TYPE_PRESENCE:
+                return findPresenceCandidates(filter, snapshot);
+            case Filter.FILTER_TYPE_SUBSTRING:
+                return findSubstringCandidates(filter, snapshot);
+            default:
+                // NOT and the rest of filters are checked by scan.
+                return null;
+        }
+    }
+
+    private static BitSet findAndCandidates(Filter[] components, DirectorySnapshot snapshot) {
+        BitSet result = null;
+        for (Filter component : components) {
+            BitSet candidates = findCandidates(component, snapshot);
+            if (candidates == null) {
+                // This part of the filter would be checked for each candidate.
+                continue;
+            }
+
+            if (result == null) {
+                result = candidates;
+            } else {
+                result.and(candidates);
+            }
+
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    private static BitSet findOrCandidates(Filter[] components, DirectorySnapshot snapshot) {
+        BitSet result = new BitSet(snapshot.size());
+        for (Filter component : components) {
+            BitSet candidates = findCandidates(component, snapshot);
+            if (candidates == null) {
+                // Any entry can match this part of the filter.
+                return null;
+            }
+            result.or(candidates);
+        }
+
+        return result;
+    }
+
+    private static BitSet findEqualityCandidates(Filter filter, DirectorySnapshot snapshot) {
+        AttributeIndex index = snapshot.getIndex(filter.getAttributeName());
+        if (index == null) {
+            return null;
+        }
+
+        BitSet result = new BitSet(snapshot.size());
+        for (int position : index.find(ValueNormalizer.normalizeValue(filter.getRawAssertionValue()))) {
+            result.set(position);
+        }
+
+        return result;
+    }
+
+    /**
+     * Initial and final components are resolved by prefix and suffix indexes. Any components are checked by scan.
+     */
+    private static BitSet findSubstringCandidates(Filter filter, DirectorySnapshot snapshot) {
+        AttributeIndex index = snapshot.getIndex(filter.getAttributeName());
+        if (index == null) {
+            return null;
+        }
+
+        BitSet result = null;
+        if (filter.getRawSubInitialValue() != null) {
+            result = index.findByPrefix(ValueNormalizer.normalizeSubstring(
+                    filter.getRawSubInitialValue(), MatchingRule.SUBSTRING_TYPE_SUBINITIAL));
+        }
+
+        if (filter.getRawSubFinalValue() != null && index.hasSuffixIndex()) {
+            BitSet candidates = index.findBySuffix(ValueNormalizer.normalizeSubstring(
+                    filter.getRawSubFinalValue(), MatchingRule.SUBSTRING_TYPE_SUBFINAL));
+            if (result == null) {
+                result = candidates;
+            } else {
+                result.and(candidates);
+            }
+        }
+
+        return result;
+    }
+
+    private static BitSet findPresenceCandidates(Filter filter, DirectorySnapshot snapshot) {
+        AttributeIndex index = snapshot.getIndex(filter.getAttributeName());
+        return index == null ? null : index.findPresent();
+    }
+
+}
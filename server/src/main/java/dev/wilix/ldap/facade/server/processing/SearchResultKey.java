@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import java.util.Objects;
+
+/**
+ * Key of projected search results. Results are valid only for the snapshot, they were found in.
+ */
+final class SearchResultKey {
+    private final long snapshotVersion;
+    private final String normalizedBaseDn;
+    private final int scope;
+    private final String normalizedFilter;
+    // Normalized requested attributes and types only flag, as projections are keyed.
+    private final String projectionKey;
+    private final String sortOrder;
+
+    SearchResultKey(long snapshotVersion, String normalizedBaseDn, int scope, String normalizedFilter,
+                    String projectionKey, String sortOrder) {
+        this.snapshotVersion = snapshotVersion;
+        this.normalizedBaseDn = normalizedBaseDn;
+        this.scope = scope;
+        this.normalizedFilter = normalizedFilter;
+        this.projectionKey = projectionKey;
+        this.sortOrder = sortOrder;
+    }
+
+    long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchResultKey that = (SearchResultKey) o;
+        return snapshotVersion == that.snapshotVersion && scope == that.scope &&
+                normalizedBaseDn.equals(that.normalizedBaseDn) && normalizedFilter.equals(that.normalizedFilter) &&
+                projectionKey.equals(that.projectionKey) && sortOrder.equals(that.sortOrder);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(snapshotVersion, normalizedBaseDn, scope, normalizedFilter, projectionKey, sortOrder);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResultKey{" +
+                "snapshotVersion=" + snapshotVersion +
+                ", baseDn='" + normalizedBaseDn + '\'' +
+                ", scope=" + scope +
+                ", filter='" + normalizedFilter + '\'' +
+                ", projection='" + projectionKey + '\'' +
+                ", sortOrder='" + sortOrder + '\'' +
+                '}';
+    }
+}
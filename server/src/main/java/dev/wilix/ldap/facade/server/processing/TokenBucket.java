@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Tokens are refilled at a constant rate up to the burst size.
+ * The state is a single time, when the bucket would be full again (generic cell rate algorithm),
+ * so acquiring is a compare-and-set of it.
+ */
+class TokenBucket {
+
+    private final long refillIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAtNanos;
+
+    /**
+     * @param tokensPerMinute Refill rate.
+     * @param burst           Maximum count of tokens acquired at once.
+     */
+    TokenBucket(long tokensPerMinute, long burst) {
+        this.refillIntervalNanos = TimeUnit.MINUTES.toNanos(1) / tokensPerMinute;
+        this.burstNanos = refillIntervalNanos * burst;
+        this.fullAtNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @return False, if there are no tokens left. No token is acquired.
+     */
+    boolean hasTokens() {
+        long now = System.nanoTime();
+        return Math.max(fullAtNanos.get(), now) + refillIntervalNanos - now <= burstNanos;
+    }
+
+    /**
+     * @return False, if there are no tokens left.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = fullAtNanos.get();
+            long newFullAt = Math.max(fullAt, now) + refillIntervalNanos;
+            if (newFullAt - now > burstNanos) {
+                return false;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, newFullAt)) {
+                return true;
+            }
+        }
+    }
+
+}
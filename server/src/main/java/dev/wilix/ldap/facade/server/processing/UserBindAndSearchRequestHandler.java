@@ -16,54 +16,105 @@
 
 package dev.wilix.ldap.facade.server.processing;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.unboundid.asn1.ASN1OctetString;
 import com.unboundid.ldap.listener.LDAPListenerClientConnection;
 import com.unboundid.ldap.listener.LDAPListenerRequestHandler;
 import com.unboundid.ldap.protocol.*;
 import com.unboundid.ldap.sdk.Control;
-import com.unboundid.ldap.sdk.Entry;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.controls.AuthorizationIdentityResponseControl;
+import com.unboundid.ldap.sdk.controls.ServerSideSortRequestControl;
+import com.unboundid.ldap.sdk.controls.ServerSideSortResponseControl;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import com.unboundid.ldap.sdk.controls.SortKey;
+import com.unboundid.ldap.sdk.extensions.StartTLSExtendedRequest;
 import com.unboundid.util.StaticUtils;
 import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
+import dev.wilix.ldap.facade.server.listener.AdmissionControl;
+import dev.wilix.ldap.facade.server.listener.ClientChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.SSLSocketFactory;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class UserBindAndSearchRequestHandler extends AllOpNotSupportedRequestHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(UserBindAndSearchRequestHandler.class);
 
-    private final LDAPListenerClientConnection connection;
+    private final ClientChannel channel;
 
     // Handlers.
     private final BindOperationProcessor bindOperationProcessor;
     private final SearchOperationProcessor searchOperationProcessor;
+    private final LdapConfigurationProperties ldapProperties;
+    private final AdmissionControl admissionControl;
+    // Null, if StartTLS is disabled.
+    private final SSLSocketFactory startTlsSocketFactory;
 
     // User authentication information.
     private Authentication authentication;
 
+    // Paged searches of the connection in progress by their cookies. Created by the first paged search.
+    private volatile Cache<Long, SearchCursor> pagedSearchCursors;
+    private long lastPagedSearchCookie;
+
     /**
      * Constructor to create a handler for the first time. During the working, connection listener would use newInstance.
      */
     public UserBindAndSearchRequestHandler(BindOperationProcessor bindOperationProcessor,
-                                           SearchOperationProcessor searchOperationProcessor) {
-        this(null, bindOperationProcessor, searchOperationProcessor);
+                                           SearchOperationProcessor searchOperationProcessor,
+                                           LdapConfigurationProperties ldapProperties,
+                                           AdmissionControl admissionControl,
+                                           SSLSocketFactory startTlsSocketFactory) {
+        this(null, bindOperationProcessor, searchOperationProcessor, ldapProperties, admissionControl,
+                startTlsSocketFactory);
     }
 
-    protected UserBindAndSearchRequestHandler(LDAPListenerClientConnection connection,
+    protected UserBindAndSearchRequestHandler(ClientChannel channel,
                                               BindOperationProcessor bindOperationProcessor,
-                                              SearchOperationProcessor searchOperationProcessor) {
-        this.connection = connection;
+                                              SearchOperationProcessor searchOperationProcessor,
+                                              LdapConfigurationProperties ldapProperties,
+                                              AdmissionControl admissionControl,
+                                              SSLSocketFactory startTlsSocketFactory) {
+        this.channel = channel;
         this.bindOperationProcessor = bindOperationProcessor;
         this.searchOperationProcessor = searchOperationProcessor;
+        this.ldapProperties = ldapProperties;
+        this.admissionControl = admissionControl;
+        this.startTlsSocketFactory = startTlsSocketFactory;
     }
 
     @Override
-    public LDAPListenerRequestHandler newInstance(LDAPListenerClientConnection connection) {
-        return new UserBindAndSearchRequestHandler(connection, bindOperationProcessor, searchOperationProcessor);
+    public LDAPListenerRequestHandler newInstance(LDAPListenerClientConnection connection) throws LDAPException {
+        return newInstance(ClientChannel.of(connection));
+    }
+
+    /**
+     * Creates a handler for a connection, which is accepted not by UnboundID listener.
+     *
+     * @throws LDAPException If there are too many connections. The connection should be closed.
+     */
+    public UserBindAndSearchRequestHandler newInstance(ClientChannel channel) throws LDAPException {
+        admissionControl.admit(channel);
+        return new UserBindAndSearchRequestHandler(channel, bindOperationProcessor, searchOperationProcessor,
+                ldapProperties, admissionControl, startTlsSocketFactory);
+    }
+
+    @Override
+    public void closeInstance() {
+        Cache<Long, SearchCursor> cursors = pagedSearchCursors;
+        if (cursors != null) {
+            cursors.invalidateAll();
+        }
+        admissionControl.release(channel);
     }
 
     @Override
@@ -73,7 +124,7 @@ public class UserBindAndSearchRequestHandler extends AllOpNotSupportedRequestHan
 
         final Authentication authResult;
         try {
-            authResult = bindOperationProcessor.doBind(request);
+            authResult = bindOperationProcessor.doBind(request, channel.getClientAddress());
         } catch (LDAPException ex) {
             return new LDAPMessage(messageID,
                     new BindResponseProtocolOp(ex.getResultCode().intValue(),
@@ -122,12 +173,42 @@ public class UserBindAndSearchRequestHandler extends AllOpNotSupportedRequestHan
                     Collections.emptyList());
         }
 
-        List<Entry> foundedEntries;
+        int foundedEntriesCount;
+        List<Control> responseControls = new ArrayList<>();
         try {
-            foundedEntries = searchOperationProcessor.doSearch(authentication, request);
+            // Entries are sent to the client as soon as they are found.
+            SearchEntryConsumer sender = entry -> channel.sendSearchResultEntry(messageID, entry);
 
-            if (foundedEntries == null) {
-                throw new IllegalStateException("Unexpected empty result from search.");
+            List<SortKey> sortKeys = Collections.emptyList();
+            Control sortControl = findControl(controls, ServerSideSortRequestControl.SERVER_SIDE_SORT_REQUEST_OID);
+            if (sortControl != null) {
+                sortKeys = getSortKeys(new ServerSideSortRequestControl(sortControl));
+                responseControls.add(new ServerSideSortResponseControl(
+                        sortKeys.isEmpty() ? ResultCode.INAPPROPRIATE_MATCHING : ResultCode.SUCCESS, null, false));
+            }
+
+            Control pagedControl = findControl(controls, SimplePagedResultsControl.PAGED_RESULTS_OID);
+            if (pagedControl == null) {
+                foundedEntriesCount = searchOperationProcessor.doSearch(authentication, request, sortKeys, sender);
+            } else {
+                var pagedResultsControl = new SimplePagedResultsControl(pagedControl.getOID(),
+                        pagedControl.isCritical(), pagedControl.getValue());
+                ASN1OctetString cookie = pagedResultsControl.getCookie();
+                SearchCursor cursor = cookie.getValueLength() == 0 ?
+                        searchOperationProcessor.openCursor(authentication, request, sortKeys) :
+                        getPagedSearchCursor(cookie, request, sortKeys);
+
+                foundedEntriesCount = cursor.sendPage(pagedResultsControl.getSize(), sender);
+
+                responseControls.add(new SimplePagedResultsControl(cursor.getRemaining(),
+                        savePagedSearchCursor(cookie, cursor, pagedResultsControl.getSize()), false));
+
+                // The last page tells the client, that some entries were left out.
+                if (cursor.isExhausted() && cursor.isSizeLimitExceeded()) {
+                    throw new LDAPException(ResultCode.SIZE_LIMIT_EXCEEDED,
+                            "Search found more entries than the size limit allows.", null, null,
+                            responseControls.toArray(new Control[0]));
+                }
             }
         } catch (LDAPException ex) {
             LOG.warn("End search operation [{}] with expected error: {}", request, ex);
@@ -145,25 +226,122 @@ public class UserBindAndSearchRequestHandler extends AllOpNotSupportedRequestHan
                     null));
         }
 
-        // Sending data about entries
-        for (Entry resultEntry : foundedEntries) {
-            try {
-                connection.sendSearchResultEntry(messageID, resultEntry);
-            } catch (final LDAPException ex) {
-                LOG.warn("There is problems with send result ldap entry.", ex);
-                return new LDAPMessage(messageID,
-                        new SearchResultDoneProtocolOp(ex.getResultCode().intValue(),
-                                ex.getMatchedDN(), ex.getDiagnosticMessage(),
-                                StaticUtils.toList(ex.getReferralURLs())),
-                        ex.getResponseControls());
-            }
-        }
-
         // Successful completion of the operation.
-        LOG.info("Search operation finished successfully with results {}", foundedEntries);
+        LOG.info("Search operation finished successfully with {} results", foundedEntriesCount);
         return new LDAPMessage(messageID,
                 new SearchResultDoneProtocolOp(ResultCode.SUCCESS_INT_VALUE, null,
                         null, null),
-                Collections.emptyList());
+                responseControls);
+    }
+
+    @Override
+    public LDAPMessage processExtendedRequest(int messageID, ExtendedRequestProtocolOp request,
+                                              List<Control> controls) {
+        if ( ! StartTLSExtendedRequest.STARTTLS_REQUEST_OID.equals(request.getOID())) {
+            return super.processExtendedRequest(messageID, request, controls);
+        }
+
+        if (startTlsSocketFactory == null) {
+            return new LDAPMessage(messageID, new ExtendedResponseProtocolOp(
+                    ResultCode.UNWILLING_TO_PERFORM_INT_VALUE, null,
+                    "StartTLS is not enabled.", null, null, null));
+        }
+
+        var response = new LDAPMessage(messageID, new ExtendedResponseProtocolOp(
+                ResultCode.SUCCESS_INT_VALUE, null, null, null,
+                StartTLSExtendedRequest.STARTTLS_REQUEST_OID, null));
+        try {
+            channel.startTls(startTlsSocketFactory, response);
+        } catch (LDAPException ex) {
+            LOG.warn("StartTLS failed: {}", ex.getMessage());
+            return new LDAPMessage(messageID,
+                    new ExtendedResponseProtocolOp(ex.getResultCode().intValue(),
+                            ex.getMatchedDN(), ex.getDiagnosticMessage(),
+                            StaticUtils.toList(ex.getReferralURLs()), null, null));
+        }
+
+        LOG.info("TLS is started for the connection from {}", channel.getClientAddress());
+        return response;
+    }
+
+    private Control findControl(List<Control> controls, String oid) {
+        for (Control control : controls) {
+            if (oid.equals(control.getOID())) {
+                return control;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Entries are sorted only by case-insensitive ordering.
+     * Unsupported sort is rejected, if the control is critical. Otherwise entries are not sorted.
+     *
+     * @return Keys to sort by or empty list, if entries would not be sorted.
+     */
+    private List<SortKey> getSortKeys(ServerSideSortRequestControl sortControl) throws LDAPException {
+        for (SortKey sortKey : sortControl.getSortKeys()) {
+            if ( ! EntryOrdering.isSupported(sortKey)) {
+                if (sortControl.isCritical()) {
+                    throw new LDAPException(ResultCode.UNAVAILABLE_CRITICAL_EXTENSION,
+                            "Ordering matching rule " + sortKey.getMatchingRuleID() + " is not supported.");
+                }
+                LOG.debug("Entries are not sorted by unsupported key {}", sortKey);
+                return Collections.emptyList();
+            }
+        }
+        return List.of(sortControl.getSortKeys());
+    }
+
+    private SearchCursor getPagedSearchCursor(ASN1OctetString cookie, SearchRequestProtocolOp request,
+                                              List<SortKey> sortKeys) throws LDAPException {
+        SearchCursor cursor = null;
+        try {
+            Cache<Long, SearchCursor> cursors = pagedSearchCursors;
+            cursor = cursors == null ? null : cursors.getIfPresent(Long.parseLong(cookie.stringValue()));
+        } catch (NumberFormatException ex) {
+            LOG.debug("Malformed paged search cookie {}", cookie.stringValue());
+        }
+
+        if (cursor == null) {
+            throw new LDAPException(ResultCode.UNWILLING_TO_PERFORM,
+                    "Paged search cookie is unknown or expired. Start the search again.");
+        }
+        if ( ! searchOperationProcessor.isOpenedFor(cursor, request, sortKeys)) {
+            throw new LDAPException(ResultCode.UNWILLING_TO_PERFORM,
+                    "Paged search cookie belongs to another search request.");
+        }
+
+        return cursor;
+    }
+
+    /**
+     * Keeps the cursor for next pages.
+     * Finished searches and searches abandoned by the client (with zero page size) are forgotten.
+     *
+     * @return Cookie to send to the client.
+     */
+    private ASN1OctetString savePagedSearchCursor(ASN1OctetString cookie, SearchCursor cursor, int pageSize) {
+        boolean newCursor = cookie.getValueLength() == 0;
+
+        if (cursor.isExhausted() || pageSize == 0) {
+            if ( ! newCursor && pagedSearchCursors != null) {
+                pagedSearchCursors.invalidate(Long.parseLong(cookie.stringValue()));
+            }
+            return new ASN1OctetString();
+        }
+
+        if (newCursor) {
+            cookie = new ASN1OctetString(Long.toString(++lastPagedSearchCookie));
+            if (pagedSearchCursors == null) {
+                // Clients may leave paged searches unfinished, so their cursors are dropped after a while.
+                pagedSearchCursors = Caffeine.newBuilder()
+                        .expireAfterAccess(ldapProperties.getPagedSearchCursorExpirationSeconds(), TimeUnit.SECONDS)
+                        .maximumSize(ldapProperties.getPagedSearchMaxCursorsPerConnection())
+                        .build();
+            }
+            pagedSearchCursors.put(lastPagedSearchCookie, cursor);
+        }
+        return cookie;
     }
 }
\ No newline at end of file
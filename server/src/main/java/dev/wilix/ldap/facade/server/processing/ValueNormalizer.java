@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 WILIX LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.matchingrules.CaseIgnoreStringMatchingRule;
+import com.unboundid.util.StaticUtils;
+
+/**
+ * Normalization of attribute names and values in the same way as the filter matching does it.
+ * Entries are built without schema, so the case ignore string matching rule is used for all attributes.
+ */
+final class ValueNormalizer {
+
+    private static final CaseIgnoreStringMatchingRule MATCHING_RULE = CaseIgnoreStringMatchingRule.getInstance();
+
+    private ValueNormalizer() {
+    }
+
+    static String normalizeAttributeName(String attributeName) {
+        return StaticUtils.toLowerCase(attributeName);
+    }
+
+    static String normalizeValue(ASN1OctetString value) {
+        return MATCHING_RULE.normalize(value).stringValue();
+    }
+
+    /**
+     * @param substringType Type of the substring component, one of {@code MatchingRule.SUBSTRING_TYPE_*}.
+     */
+    static String normalizeSubstring(ASN1OctetString value, byte substringType) {
+        return MATCHING_RULE.normalizeSubstring(value, substringType).stringValue();
+    }
+
+}
@@ -0,0 +1,160 @@
+package dev.wilix.ldap.facade.server;
+
+import com.unboundid.ldap.sdk.*;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import com.unboundid.util.LDAPTestUtils;
+import dev.wilix.ldap.facade.api.DataStorage;
+import dev.wilix.ldap.facade.server.config.properties.ServerConfigurationProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static dev.wilix.ldap.facade.server.TestUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"listener.type=nio", "listener.port=6361", "listener.eventLoopThreads=2",
+        "listener.idleTimeoutSeconds=2"})
+@ActiveProfiles("test")
+public class NioListenerTest {
+
+    @TestConfiguration
+    public static class Configuration {
+        @Bean
+        public DataStorage testStorage() {
+            return new TestStorage();
+        }
+    }
+
+    @Autowired
+    ServerConfigurationProperties serverConfigurationProperties;
+
+    @Test
+    public void bindAndSearch() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = ldap.bind(userDn(USERNAME), USER_PASSWORD);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(uid=*)");
+        }
+
+        LDAPTestUtils.assertResultCodeEquals(bindResult, ResultCode.SUCCESS);
+        LDAPTestUtils.assertEntriesReturnedEquals(searchResult, 4);
+    }
+
+    @Test
+    public void negativeBind() {
+        var exception = assertThrows(LDAPException.class, () -> {
+            try (LDAPConnection ldap = openLDAP()) {
+                ldap.bind(userDn(USERNAME), "wrongPassword");
+            }
+        });
+
+        assertEquals(ResultCode.INVALID_CREDENTIALS, exception.getResultCode());
+    }
+
+    @Test
+    public void searchPageByPage() throws LDAPException {
+        int found = 0;
+        try (LDAPConnection ldap = openLDAP()) {
+            ldap.bind(userDn(USERNAME), USER_PASSWORD);
+
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setControls(new SimplePagedResultsControl(1));
+            while (true) {
+                SearchResult page = ldap.search(request);
+                found += page.getEntryCount();
+                var cookie = SimplePagedResultsControl.get(page).getCookie();
+                if (cookie.getValueLength() == 0) {
+                    break;
+                }
+                request.setControls(new SimplePagedResultsControl(1, cookie));
+            }
+        }
+
+        assertEquals(4, found);
+    }
+
+    @Test
+    public void concurrentRequestsOfOneConnection() throws Exception {
+        var executor = Executors.newFixedThreadPool(8);
+        try (LDAPConnection ldap = openLDAP()) {
+            ldap.bind(userDn(USERNAME), USER_PASSWORD);
+
+            List<Future<Integer>> results = new ArrayList<>();
+            Callable<Integer> search = () -> ldap.search(BASE_DN, SearchScope.SUB, "(objectClass=*)").getEntryCount();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(search));
+            }
+
+            int expected = ldap.search(BASE_DN, SearchScope.SUB, "(objectClass=*)").getEntryCount();
+            for (Future<Integer> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void requestLargerThanReadBuffer() throws LDAPException {
+        List<Filter> names = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            names.add(Filter.createEqualityFilter("uid", "absent" + i));
+        }
+        names.add(Filter.createEqualityFilter("uid", USERNAME));
+
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            ldap.bind(userDn(USERNAME), USER_PASSWORD);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, Filter.createORFilter(names));
+        }
+
+        LDAPTestUtils.assertEntriesReturnedEquals(searchResult, 1);
+    }
+
+    @Test
+    public void manyIdleConnections() throws LDAPException {
+        List<LDAPConnection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                connections.add(openLDAP());
+            }
+
+            for (LDAPConnection ldap : connections) {
+                LDAPTestUtils.assertResultCodeEquals(ldap.bind(userDn(USERNAME), USER_PASSWORD), ResultCode.SUCCESS);
+            }
+        } finally {
+            connections.forEach(LDAPConnection::close);
+        }
+    }
+
+    @Test
+    public void idleConnectionIsClosed() throws Exception {
+        try (LDAPConnection ldap = openLDAP()) {
+            ldap.bind(userDn(USERNAME), USER_PASSWORD);
+
+            Thread.sleep(4500);
+
+            var exception = assertThrows(LDAPException.class, () -> ldap.search(BASE_DN, SearchScope.SUB, "(uid=*)"));
+            assertEquals(ResultCode.SERVER_DOWN, exception.getResultCode());
+        }
+    }
+
+    private LDAPConnection openLDAP() throws LDAPException {
+        return new LDAPConnection("localhost", serverConfigurationProperties.getPort());
+    }
+
+    private String userDn(String username) {
+        return String.format("uid=%s,%s", username, USER_BASE_DN);
+    }
+}
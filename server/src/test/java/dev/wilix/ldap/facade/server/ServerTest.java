@@ -1,9 +1,15 @@
 package dev.wilix.ldap.facade.server;
 
+import com.unboundid.asn1.ASN1OctetString;
 import com.unboundid.ldap.sdk.*;
+import com.unboundid.ldap.sdk.controls.ServerSideSortRequestControl;
+import com.unboundid.ldap.sdk.controls.ServerSideSortResponseControl;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import com.unboundid.ldap.sdk.controls.SortKey;
 import com.unboundid.util.LDAPTestUtils;
 import dev.wilix.ldap.facade.api.DataStorage;
 import dev.wilix.ldap.facade.server.config.properties.ServerConfigurationProperties;
+import dev.wilix.ldap.facade.server.processing.SearchOperationProcessor;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,11 +18,17 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static dev.wilix.ldap.facade.server.TestUtils.*;
 
-@SpringBootTest
+// Entities are cached, as they are by default, so search results are taken from the cache too.
+@SpringBootTest(properties = "ldap.searchCacheExpirationMinutes=10")
 @ActiveProfiles("test")
 public class ServerTest {
 
@@ -31,6 +43,9 @@ public class ServerTest {
     @Autowired
     ServerConfigurationProperties serverConfigurationProperties;
 
+    @Autowired
+    SearchOperationProcessor searchOperationProcessor;
+
     @Test
     public void positiveUserAuthenticate() throws LDAPException {
         BindResult bindResult;
@@ -81,6 +96,18 @@ public class ServerTest {
         checkSearchResults(4, bindResult, searchResult);
     }
 
+    @Test
+    public void searchAllEntityFromRootDse() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search("", SearchScope.SUB, "(uid=*)");
+        }
+
+        checkSearchResults(4, bindResult, searchResult);
+    }
+
     @Test
     public void searchAllEntityFromUsersDirectory() throws LDAPException {
         BindResult bindResult;
@@ -129,6 +156,260 @@ public class ServerTest {
         checkSearchResults(1, bindResult, searchResult);
     }
 
+    @Test
+    public void searchUserByIndexedAttributeIgnoringCase() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(uid=USERNAME)");
+        }
+
+        checkSearchResults(1, bindResult, searchResult);
+    }
+
+    @Test
+    public void searchEntitiesByDisjunctionOfIndexedAttributes() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(|(mail=email2@e.mail)(cn=groupTwo))");
+        }
+
+        checkSearchResults(2, bindResult, searchResult);
+    }
+
+    @Test
+    public void searchUserByIndexedAndNotIndexedAttributes() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(&(objectClass=organizationalPerson)(active=true))");
+        }
+
+        checkSearchResults(1, bindResult, searchResult);
+    }
+
+    @Test
+    public void searchUsersByPrefixOfIndexedAttribute() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(cn=firstname*)");
+        }
+
+        checkSearchResults(2, bindResult, searchResult);
+    }
+
+    @Test
+    public void searchUsersBySuffixOfIndexedAttribute() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(mail=*2@E.MAIL)");
+        }
+
+        checkSearchResults(1, bindResult, searchResult);
+    }
+
+    @Test
+    public void searchUserByBaseScopeIgnoringDnCase() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search("UID=username,OU=People,dc=example,dc=com", SearchScope.BASE, "(objectClass=*)");
+        }
+
+        checkSearchResults(1, bindResult, searchResult);
+    }
+
+    @Test
+    public void searchEntitiesByOneLevelScope() throws LDAPException {
+        BindResult bindResult;
+        SearchResult usersSearchResult;
+        SearchResult rootSearchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            usersSearchResult = ldap.search(USER_BASE_DN, SearchScope.ONE, "(objectClass=*)");
+            rootSearchResult = ldap.search(BASE_DN, SearchScope.ONE, "(objectClass=*)");
+        }
+
+        checkSearchResults(2, bindResult, usersSearchResult);
+        checkSearchResults(0, bindResult, rootSearchResult);
+    }
+
+    @Test
+    public void searchUsersBySubstringWithAnyComponents() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(&(objectClass=*)(sn=*name*two))");
+        }
+
+        checkSearchResults(1, bindResult, searchResult);
+    }
+
+    @Test
+    public void searchAllEntityFromRootDirectoryPageByPage() throws LDAPException {
+        BindResult bindResult;
+        SearchResult firstPage;
+        SearchResult secondPage;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setControls(new SimplePagedResultsControl(3));
+            firstPage = ldap.search(request);
+
+            request.setControls(new SimplePagedResultsControl(3, getPagedResultsCookie(firstPage)));
+            secondPage = ldap.search(request);
+        }
+
+        checkSearchResults(3, bindResult, firstPage);
+        assertEquals(1, getPagedResultsControl(firstPage).getSize());
+        assertTrue(getPagedResultsCookie(firstPage).getValueLength() > 0);
+
+        checkSearchResults(1, bindResult, secondPage);
+        assertEquals(0, getPagedResultsCookie(secondPage).getValueLength());
+    }
+
+    @Test
+    public void repeatedSearchIsTakenFromResultsCache() throws LDAPException {
+        BindResult bindResult;
+        SearchResult firstResult;
+        SearchResult secondResult;
+        long hitCount;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            firstResult = ldap.search(BASE_DN, SearchScope.SUB, "(objectClass=groupOfNames)");
+            hitCount = searchOperationProcessor.getSearchResultsCacheStats().hitCount();
+            secondResult = ldap.search(BASE_DN, SearchScope.SUB, "(objectClass=groupOfNames)");
+        }
+
+        checkSearchResults(2, bindResult, firstResult);
+        checkSearchResults(2, bindResult, secondResult);
+        assertEquals(hitCount + 1, searchOperationProcessor.getSearchResultsCacheStats().hitCount());
+    }
+
+    @Test
+    public void searchPageByUnknownCookie() throws LDAPException {
+        try (LDAPConnection ldap = openLDAP()) {
+            userBindResult(ldap);
+
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setControls(new SimplePagedResultsControl(3, new ASN1OctetString("42")));
+
+            LDAPSearchException exception = assertThrows(LDAPSearchException.class, () -> ldap.search(request));
+            assertEquals(ResultCode.UNWILLING_TO_PERFORM, exception.getResultCode());
+        }
+    }
+
+    @Test
+    public void searchAllEntityFromRootDirectorySortedByUidDescending() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setControls(new ServerSideSortRequestControl(new SortKey("uid", true)));
+            searchResult = ldap.search(request);
+        }
+
+        checkSearchResults(4, bindResult, searchResult);
+        assertEquals(List.of("usernameTwo", "username", "groupTwo", "groupOne"), getUids(searchResult));
+        assertEquals(ResultCode.SUCCESS, ServerSideSortResponseControl.get(searchResult).getResultCode());
+    }
+
+    @Test
+    public void searchAllEntityFromRootDirectorySortedByMissingAttribute() throws LDAPException {
+        BindResult bindResult;
+        SearchResult ascendingResult;
+        SearchResult descendingResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+
+            // Groups have no sn, they are ordered as having the greatest value.
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setControls(new ServerSideSortRequestControl(new SortKey("sn")));
+            ascendingResult = ldap.search(request);
+
+            request.setControls(new ServerSideSortRequestControl(new SortKey("sn", true)));
+            descendingResult = ldap.search(request);
+        }
+
+        checkSearchResults(4, bindResult, ascendingResult);
+        assertEquals(List.of("username", "usernameTwo", "groupOne", "groupTwo"), getUids(ascendingResult));
+        checkSearchResults(4, bindResult, descendingResult);
+        assertEquals(List.of("groupOne", "groupTwo", "usernameTwo", "username"), getUids(descendingResult));
+    }
+
+    @Test
+    public void searchUsersSortedByNotPreparedAttribute() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+
+            var request = new SearchRequest(USER_BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setControls(new ServerSideSortRequestControl(new SortKey("telephoneNumber")));
+            searchResult = ldap.search(request);
+        }
+
+        checkSearchResults(2, bindResult, searchResult);
+        assertEquals(List.of("usernameTwo", "username"), getUids(searchResult));
+    }
+
+    @Test
+    public void searchSortedByUnsupportedMatchingRule() throws LDAPException {
+        try (LDAPConnection ldap = openLDAP()) {
+            userBindResult(ldap);
+
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setControls(new ServerSideSortRequestControl(true, new SortKey("uid", "integerOrderingMatch", false)));
+
+            LDAPSearchException exception = assertThrows(LDAPSearchException.class, () -> ldap.search(request));
+            assertEquals(ResultCode.UNAVAILABLE_CRITICAL_EXTENSION, exception.getResultCode());
+        }
+    }
+
+    @Test
+    public void searchAllEntityFromRootDirectoryWithSizeLimit() throws LDAPException {
+        try (LDAPConnection ldap = openLDAP()) {
+            userBindResult(ldap);
+
+            // Results of the search without limit are cached and read again by the limited search.
+            LDAPTestUtils.assertEntriesReturnedEquals(ldap.search(BASE_DN, SearchScope.SUB, "(uid=*)"), 4);
+
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(uid=*)");
+            request.setSizeLimit(1);
+
+            LDAPSearchException exception = assertThrows(LDAPSearchException.class, () -> ldap.search(request));
+            assertEquals(ResultCode.SIZE_LIMIT_EXCEEDED, exception.getResultCode());
+            assertEquals(1, exception.getEntryCount());
+        }
+    }
+
+    @Test
+    public void searchEntitiesByNotIndexedAttributeWithSizeLimit() throws LDAPException {
+        try (LDAPConnection ldap = openLDAP()) {
+            userBindResult(ldap);
+
+            var request = new SearchRequest(BASE_DN, SearchScope.SUB, "(id=*)");
+            request.setSizeLimit(3);
+
+            LDAPSearchException exception = assertThrows(LDAPSearchException.class, () -> ldap.search(request));
+            assertEquals(ResultCode.SIZE_LIMIT_EXCEEDED, exception.getResultCode());
+            assertEquals(3, exception.getEntryCount());
+        }
+    }
+
     @Test
     public void searchUserWhoParticipateInAllTwoGroup() throws LDAPException {
         BindResult bindResult;
@@ -251,6 +532,39 @@ public class ServerTest {
         checkSearchResults(2, bindResult, searchResult, attributes);
     }
 
+    @Test
+    public void searchUsersAndReceiveThemWithoutAttributes() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+            searchResult = ldap.search(USER_BASE_DN, SearchScope.SUB, "(uid=*)", SearchRequest.NO_ATTRIBUTES);
+        }
+
+        checkSearchResults(2, bindResult, searchResult, new String[0]);
+        searchResult.getSearchEntries().forEach(entry -> assertTrue(entry.getAttributes().isEmpty()));
+    }
+
+    @Test
+    public void searchUsersAndReceiveTypesOfAttributesOnly() throws LDAPException {
+        BindResult bindResult;
+        SearchResult searchResult;
+        String[] attributes = {"uid", "mail"};
+        try (LDAPConnection ldap = openLDAP()) {
+            bindResult = userBindResult(ldap);
+
+            var request = new SearchRequest(USER_BASE_DN, SearchScope.SUB, "(uid=*)", attributes);
+            request.setTypesOnly(true);
+            searchResult = ldap.search(request);
+        }
+
+        checkSearchResults(2, bindResult, searchResult, attributes);
+        for (SearchResultEntry entry : searchResult.getSearchEntries()) {
+            assertEquals(2, entry.getAttributes().size());
+            entry.getAttributes().forEach(attribute -> assertFalse(attribute.hasValue()));
+        }
+    }
+
     // FIXME
     //  Possible to specify uniques attributes for both users and groups, therefore test will fail. Attribute validation
     //  currently validates entities against all of their attributes. If you send it for verification via another method
@@ -269,6 +583,20 @@ public class ServerTest {
         checkSearchResults(4, bindResult, searchResult, attributes);
     }
 
+    private SimplePagedResultsControl getPagedResultsControl(SearchResult searchResult) throws LDAPException {
+        return SimplePagedResultsControl.get(searchResult);
+    }
+
+    private ASN1OctetString getPagedResultsCookie(SearchResult searchResult) throws LDAPException {
+        return getPagedResultsControl(searchResult).getCookie();
+    }
+
+    private List<String> getUids(SearchResult searchResult) {
+        return searchResult.getSearchEntries().stream()
+                .map(entry -> entry.getAttributeValue("uid"))
+                .collect(Collectors.toList());
+    }
+
     private LDAPConnection openLDAP() throws LDAPException {
         return new LDAPConnection("localhost", serverConfigurationProperties.getPort());
     }
@@ -0,0 +1,106 @@
+package dev.wilix.ldap.facade.server;
+
+import com.unboundid.ldap.sdk.*;
+import com.unboundid.ldap.sdk.extensions.StartTLSExtendedRequest;
+import com.unboundid.util.LDAPTestUtils;
+import com.unboundid.util.ssl.SSLUtil;
+import com.unboundid.util.ssl.TrustAllTrustManager;
+import com.unboundid.util.ssl.cert.ManageCertificates;
+import dev.wilix.ldap.facade.api.DataStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.net.ssl.SSLContext;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static dev.wilix.ldap.facade.server.TestUtils.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(properties = {"listener.port=6362", "listener.startTlsEnabled=true"})
+@ActiveProfiles("test")
+public class TlsTest {
+
+    private static final int PORT = 6362;
+    private static final String KEY_STORE_PASS = "password";
+
+    @TestConfiguration
+    public static class Configuration {
+        @Bean
+        public DataStorage testStorage() {
+            return new TestStorage();
+        }
+    }
+
+    @DynamicPropertySource
+    static void keyStoreProperties(DynamicPropertyRegistry registry) throws Exception {
+        Path keyStore = Files.createTempDirectory("ldap-facade-tls").resolve("server.jks");
+        ResultCode resultCode = ManageCertificates.main((InputStream) null, null, null, "generate-self-signed-certificate",
+                "--keystore", keyStore.toString(), "--keystore-password", KEY_STORE_PASS, "--keystore-type", "JKS",
+                "--alias", "server", "--subject-dn", "CN=localhost");
+        assertEquals(ResultCode.SUCCESS, resultCode);
+
+        registry.add("listener.keyStorePath", keyStore::toString);
+        registry.add("listener.keyStorePass", () -> KEY_STORE_PASS);
+    }
+
+    @Test
+    public void bindAndSearchAfterStartTls() throws Exception {
+        BindResult bindResult;
+        SearchResult searchResult;
+        try (LDAPConnection ldap = new LDAPConnection("localhost", PORT)) {
+            startTls(ldap, clientContext("TLSv1.3"));
+            assertEquals("TLSv1.3", ldap.getSSLSession().getProtocol());
+
+            bindResult = ldap.bind(String.format("uid=%s,%s", USERNAME, USER_BASE_DN), USER_PASSWORD);
+            searchResult = ldap.search(BASE_DN, SearchScope.SUB, "(uid=*)");
+        }
+
+        LDAPTestUtils.assertResultCodeEquals(bindResult, ResultCode.SUCCESS);
+        LDAPTestUtils.assertEntriesReturnedEquals(searchResult, 4);
+    }
+
+    @Test
+    public void tlsSessionIsResumed() throws Exception {
+        SSLContext clientContext = clientContext("TLSv1.2");
+        byte[] firstSessionId;
+        byte[] secondSessionId;
+        byte[] otherClientSessionId;
+        try (LDAPConnection ldap = new LDAPConnection("localhost", PORT)) {
+            startTls(ldap, clientContext);
+            firstSessionId = ldap.getSSLSession().getId();
+        }
+        try (LDAPConnection ldap = new LDAPConnection("localhost", PORT)) {
+            startTls(ldap, clientContext);
+            secondSessionId = ldap.getSSLSession().getId();
+        }
+        try (LDAPConnection ldap = new LDAPConnection("localhost", PORT)) {
+            startTls(ldap, clientContext("TLSv1.2"));
+            otherClientSessionId = ldap.getSSLSession().getId();
+        }
+
+        assertNotNull(firstSessionId);
+        assertArrayEquals(firstSessionId, secondSessionId);
+        // A client without the cached session makes the full handshake.
+        assertFalse(Arrays.equals(firstSessionId, otherClientSessionId));
+    }
+
+    private void startTls(LDAPConnection ldap, SSLContext clientContext) throws LDAPException {
+        ExtendedResult result = ldap.processExtendedOperation(new StartTLSExtendedRequest(clientContext));
+        LDAPTestUtils.assertResultCodeEquals(result, ResultCode.SUCCESS);
+    }
+
+    private static SSLContext clientContext(String protocol) throws Exception {
+        return new SSLUtil(new TrustAllTrustManager()).createSSLContext(protocol);
+    }
+}
@@ -0,0 +1,104 @@
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.protocol.LDAPMessage;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdmissionControlTest {
+
+    @Test
+    public void connectionsOverLimitAreRejected() throws Exception {
+        var admissionControl = new AdmissionControl(2, 0, 0);
+        var first = new TestChannel("10.0.0.1");
+        var second = new TestChannel("10.0.0.2");
+
+        admissionControl.admit(first);
+        admissionControl.admit(second);
+        var exception = assertThrows(LDAPException.class, () -> admissionControl.admit(new TestChannel("10.0.0.3")));
+
+        assertEquals(ResultCode.BUSY, exception.getResultCode());
+        assertEquals(2, admissionControl.getActiveConnections());
+        assertEquals(1, admissionControl.getRejectedConnections());
+
+        admissionControl.release(first);
+        admissionControl.admit(new TestChannel("10.0.0.3"));
+        assertEquals(2, admissionControl.getActiveConnections());
+    }
+
+    @Test
+    public void connectionsOfEveryAddressAreLimitedSeparately() throws Exception {
+        var admissionControl = new AdmissionControl(0, 1, 0);
+        var first = new TestChannel("10.0.0.1");
+
+        admissionControl.admit(first);
+        admissionControl.admit(new TestChannel("10.0.0.2"));
+        assertThrows(LDAPException.class, () -> admissionControl.admit(new TestChannel("10.0.0.1")));
+        assertEquals(2, admissionControl.getActiveConnections());
+
+        admissionControl.release(first);
+        admissionControl.admit(new TestChannel("10.0.0.1"));
+        assertEquals(2, admissionControl.getActiveConnections());
+    }
+
+    @Test
+    public void idleTimeoutIsSetForAdmittedConnections() throws Exception {
+        var channel = new TestChannel("10.0.0.1");
+
+        new AdmissionControl(0, 0, 30).admit(channel);
+
+        assertEquals(30, channel.idleTimeoutSeconds);
+    }
+
+    @Test
+    public void connectionIsNotCountedIfItCanNotBeSetUp() throws Exception {
+        var admissionControl = new AdmissionControl(1, 1, 30);
+        var channel = new TestChannel("10.0.0.1") {
+            @Override
+            public void setIdleTimeout(int seconds) throws LDAPException {
+                throw new LDAPException(ResultCode.OTHER, "Socket is closed.");
+            }
+        };
+
+        assertThrows(LDAPException.class, () -> admissionControl.admit(channel));
+        assertEquals(0, admissionControl.getActiveConnections());
+
+        admissionControl.admit(new TestChannel("10.0.0.1"));
+        assertEquals(1, admissionControl.getActiveConnections());
+    }
+
+    private static class TestChannel implements ClientChannel {
+
+        private final InetAddress address;
+        private int idleTimeoutSeconds;
+
+        TestChannel(String address) throws Exception {
+            this.address = InetAddress.getByName(address);
+        }
+
+        @Override
+        public InetAddress getClientAddress() {
+            return address;
+        }
+
+        @Override
+        public void sendSearchResultEntry(int messageID, Entry entry) {
+        }
+
+        @Override
+        public void setIdleTimeout(int seconds) throws LDAPException {
+            idleTimeoutSeconds = seconds;
+        }
+
+        @Override
+        public void startTls(SSLSocketFactory socketFactory, LDAPMessage response) {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package dev.wilix.ldap.facade.server.listener;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryRequestHandler;
+import com.unboundid.ldap.listener.LDAPListenerConfig;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.SearchScope;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class ExecutorConnectionListenerTest {
+
+    @Test
+    public void connectionsAreHandledByExecutor() throws Exception {
+        var requestHandler = new InMemoryRequestHandler(new InMemoryDirectoryServerConfig("dc=example,dc=com"));
+        requestHandler.addEntry(new Entry("dn: dc=example,dc=com", "objectClass: domain", "dc: example"), false);
+
+        var listener = new ExecutorConnectionListener(new LDAPListenerConfig(0, requestHandler),
+                Executors.newCachedThreadPool());
+        listener.startListening();
+        try (var first = new LDAPConnection("localhost", listener.getListenPort());
+             var second = new LDAPConnection("localhost", listener.getListenPort())) {
+            assertEquals(1, first.search("dc=example,dc=com", SearchScope.BASE, "(dc=example)").getEntryCount());
+            assertEquals(1, second.search("dc=example,dc=com", SearchScope.SUB, "(objectClass=*)").getEntryCount());
+
+            listener.shutDown(true);
+            assertEquals(-1, listener.getListenPort());
+            // Closed connection is noticed by the client asynchronously.
+            Thread.sleep(200);
+            assertFalse(first.isConnected());
+        } finally {
+            listener.shutDown(true);
+        }
+    }
+}
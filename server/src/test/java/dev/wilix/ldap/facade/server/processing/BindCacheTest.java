@@ -0,0 +1,42 @@
+package dev.wilix.ldap.facade.server.processing;
+
+import dev.wilix.ldap.facade.api.Authentication;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class BindCacheTest {
+
+    private static final String BIND_DN = "uid=username,ou=people,dc=example,dc=com";
+
+    private final BindCache bindCache = new BindCache(60, 10, 60, 10, 10);
+
+    @Test
+    public void successfulBindIsFoundOnlyWithTheSamePassword() {
+        Authentication authentication = () -> true;
+        bindCache.remember(BIND_DN, "password", authentication);
+
+        assertSame(authentication, bindCache.find(BIND_DN, "password"));
+        assertNull(bindCache.find(BIND_DN, "anotherPassword"));
+        assertNull(bindCache.find("uid=another,ou=people,dc=example,dc=com", "password"));
+    }
+
+    @Test
+    public void failedBindIsFoundOnlyWithTheSamePassword() {
+        bindCache.remember(BIND_DN, "wrongPassword", Authentication.NEGATIVE);
+
+        assertSame(Authentication.NEGATIVE, bindCache.find(BIND_DN, "wrongPassword"));
+        assertNull(bindCache.find(BIND_DN, "password"));
+    }
+
+    @Test
+    public void successfulBindForgetsFailedOne() {
+        Authentication authentication = () -> true;
+        bindCache.remember(BIND_DN, "wrongPassword", Authentication.NEGATIVE);
+        bindCache.remember(BIND_DN, "password", authentication);
+
+        assertNull(bindCache.find(BIND_DN, "wrongPassword"));
+        assertSame(authentication, bindCache.find(BIND_DN, "password"));
+    }
+}
@@ -0,0 +1,49 @@
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.protocol.BindRequestProtocolOp;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.server.TestStorage;
+import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BindOperationProcessorTest {
+
+    private static final String USER_DN = "uid=username,ou=people,dc=example,dc=com";
+
+    @Test
+    public void onlyFailedBindsAreLimited() throws LDAPException {
+        var properties = createProperties();
+        properties.setBindRatePerDnPerMinute(1);
+        properties.setBindBurstPerDn(1);
+        var processor = new BindOperationProcessor(new TestStorage(), new LdapNamingHelper(properties), properties,
+                new KnownUsersFilter(false, 0.01));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(processor.doBind(new BindRequestProtocolOp(USER_DN, "password"), null).isSuccess());
+        }
+
+        Authentication failed = processor.doBind(new BindRequestProtocolOp(USER_DN, "wrongPassword"), null);
+        assertFalse(failed.isSuccess());
+
+        var exception = assertThrows(LDAPException.class,
+                () -> processor.doBind(new BindRequestProtocolOp(USER_DN, "password"), null));
+        assertEquals(ResultCode.UNWILLING_TO_PERFORM, exception.getResultCode());
+    }
+
+    private static LdapConfigurationProperties createProperties() {
+        var properties = new LdapConfigurationProperties();
+        properties.setBaseDn("dc=example,dc=com");
+        properties.setServicesBaseDn("ou=services,dc=example,dc=com");
+        properties.setUsersBaseDn("ou=people,dc=example,dc=com");
+        properties.setGroupsBaseDn("ou=groups,dc=example,dc=com");
+        properties.setMainNameAttribute("uid");
+        return properties;
+    }
+}
@@ -0,0 +1,65 @@
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CompiledFilterTest {
+
+    private static final List<Entry> ENTRIES = List.of(
+            new Entry("uid=username,ou=people,dc=example,dc=com",
+                    new Attribute("objectClass", "organizationalPerson"),
+                    new Attribute("uid", "username"),
+                    new Attribute("cn", "FirstName  SecondName"),
+                    new Attribute("mail", "email@e.mail"),
+                    new Attribute("memberof", "uid=groupOne,ou=groups,dc=example,dc=com",
+                            "uid=groupTwo,ou=groups,dc=example,dc=com")),
+            new Entry("uid=usernameTwo,ou=people,dc=example,dc=com",
+                    new Attribute("objectClass", "organizationalPerson"),
+                    new Attribute("uid", "usernameTwo"),
+                    new Attribute("cn", "Second User"),
+                    new Attribute("active", "false")),
+            new Entry("uid=groupOne,ou=groups,dc=example,dc=com",
+                    new Attribute("objectClass", "groupOfNames"),
+                    new Attribute("uid", "groupOne"),
+                    new Attribute("member", "uid=username,ou=people,dc=example,dc=com")));
+
+    private static final DirectorySnapshot SNAPSHOT = DirectorySnapshot.build(ENTRIES, List.of("uid", "cn"), true, List.of(), 1);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "(objectClass=*)",
+            "(uid=USERNAME)",
+            "(cn=firstname secondname)",
+            "(cn=First*)",
+            "(cn=*name)",
+            "(cn=f*name*sec*e)",
+            "(cn=*name*name*name*)",
+            "(uid=u*e*e)",
+            "(active=*)",
+            "(!(active=*))",
+            "(notExistAttribute=*)",
+            "(!(notExistAttribute=*))",
+            "(&)",
+            "(|)",
+            "(&(objectClass=organizationalPerson)(|(uid=username)(active=false)))",
+            "(memberof=UID=groupTwo,ou=groups,dc=example,dc=com)",
+            "(uid>=usernameA)"
+    })
+    public void compiledFilterMatchesTheSameEntriesAsFilter(String filterString) throws LDAPException {
+        Filter filter = Filter.create(filterString);
+        EntryMatcher matcher = new FilterCompiler(10).compile(filter).bind(SNAPSHOT);
+
+        for (int position = 0; position < SNAPSHOT.size(); position++) {
+            assertEquals(filter.matchesEntry(SNAPSHOT.get(position)), matcher.matches(position),
+                    filterString + " for " + SNAPSHOT.get(position).getDN());
+        }
+    }
+}
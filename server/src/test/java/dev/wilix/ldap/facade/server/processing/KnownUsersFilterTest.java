@@ -0,0 +1,36 @@
+package dev.wilix.ldap.facade.server.processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KnownUsersFilterTest {
+
+    @Test
+    public void everyUserIsKnownBeforeUpdate() {
+        var filter = new KnownUsersFilter(true, 0.01);
+
+        assertTrue(filter.mightBeKnown("username"));
+    }
+
+    @Test
+    public void unknownUserIsRejectedAfterUpdate() {
+        var filter = new KnownUsersFilter(true, 0.0001);
+        filter.update(List.of("username", "usernameTwo"));
+
+        assertTrue(filter.mightBeKnown("username"));
+        assertTrue(filter.mightBeKnown("USERNAMETWO"));
+        assertFalse(filter.mightBeKnown("scanner"));
+    }
+
+    @Test
+    public void disabledFilterKnowsEveryUser() {
+        var filter = new KnownUsersFilter(false, 0.01);
+        filter.update(List.of("username"));
+
+        assertTrue(filter.mightBeKnown("scanner"));
+    }
+}
@@ -0,0 +1,59 @@
+package dev.wilix.ldap.facade.server.processing;
+
+import dev.wilix.ldap.facade.api.CompactEntry;
+import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LdapNamingHelperTest {
+
+    private final LdapNamingHelper namingHelper = new LdapNamingHelper(createProperties());
+
+    @Test
+    public void userDnIsRecognizedIgnoringCase() {
+        assertTrue(namingHelper.isUserDn("uid=john,ou=people,dc=example,dc=com"));
+        assertTrue(namingHelper.isUserDn("UID=John,OU=People,DC=example,DC=com"));
+        assertEquals("John", namingHelper.extractUserNameFromDn("UID=John,OU=People,DC=example,DC=com"));
+
+        assertFalse(namingHelper.isServiceDn("uid=john,ou=people,dc=example,dc=com"));
+        assertFalse(namingHelper.isUserDn("cn=john,ou=people,dc=example,dc=com"));
+        assertFalse(namingHelper.isUserDn("uid=john,ou=people,dc=example,dc=org"));
+        assertFalse(namingHelper.isUserDn("ou=people,dc=example,dc=com"));
+        assertNull(namingHelper.extractServiceNameFromDn("uid=john,ou=people,dc=example,dc=com"));
+    }
+
+    @Test
+    public void nameIsTakenUpToTheBaseDn() {
+        assertEquals("doe,john", namingHelper.extractUserNameFromDn("uid=doe,john,ou=people,dc=example,dc=com"));
+        assertEquals("", namingHelper.extractServiceNameFromDn("uid=,ou=services,dc=example,dc=com"));
+    }
+
+    @Test
+    public void generatedDnsAreShared() {
+        String memberDn = namingHelper.generateDnForEntryFromAttribute("john", EntityType.USER);
+        String entryDn = namingHelper.generateDnForEntry(
+                CompactEntry.of(Map.of("uid", List.of("john"))), EntityType.USER);
+
+        assertEquals("uid=john,ou=people,dc=example,dc=com", entryDn);
+        assertSame(memberDn, entryDn);
+        assertEquals("uid=admins,ou=groups,dc=example,dc=com",
+                namingHelper.generateDnForEntryFromAttribute("admins", EntityType.GROUP));
+    }
+
+    private static LdapConfigurationProperties createProperties() {
+        var properties = new LdapConfigurationProperties();
+        properties.setMainNameAttribute("uid");
+        properties.setUsersBaseDn("ou=people,dc=example,dc=com");
+        properties.setServicesBaseDn("ou=services,dc=example,dc=com");
+        properties.setGroupsBaseDn("ou=groups,dc=example,dc=com");
+        return properties;
+    }
+}
@@ -0,0 +1,333 @@
+package dev.wilix.ldap.facade.server.processing;
+
+import com.unboundid.ldap.protocol.SearchRequestProtocolOp;
+import com.unboundid.ldap.sdk.DereferencePolicy;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchScope;
+import dev.wilix.ldap.facade.api.Authentication;
+import dev.wilix.ldap.facade.api.CompactEntry;
+import dev.wilix.ldap.facade.api.DataStorage;
+import dev.wilix.ldap.facade.api.EntryChanges;
+import dev.wilix.ldap.facade.api.SearchPredicate;
+import dev.wilix.ldap.facade.api.SearchPushdown;
+import dev.wilix.ldap.facade.server.config.properties.LdapConfigurationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchOperationProcessorTest {
+
+    private static final String BASE_DN = "dc=example,dc=com";
+
+    private final Authentication service = () -> true;
+    private final Authentication user = () -> true;
+    private final Authentication otherUser = () -> true;
+    private final TestViewStorage storage = new TestViewStorage();
+    private final LdapConfigurationProperties properties = createProperties();
+    private final AtomicLong nanos = new AtomicLong();
+    private Executor refreshExecutor = Runnable::run;
+
+    @Test
+    public void knownUsersAreTakenOnlyFromEntitiesWithAllUsers() throws LDAPException {
+        storage.users.put(service, List.of(user("username"), user("usernameTwo")));
+        storage.users.put(user, List.of(user("username")));
+        storage.allUsersView = service;
+        var knownUsersFilter = new KnownUsersFilter(true, 0.0001);
+        var processor = createProcessor(knownUsersFilter);
+
+        search(processor, user, "(uid=*)");
+        assertTrue(knownUsersFilter.mightBeKnown("usernameTwo"));
+        assertTrue(knownUsersFilter.mightBeKnown("scanner"));
+
+        search(processor, service, "(uid=*)");
+        assertTrue(knownUsersFilter.mightBeKnown("usernameTwo"));
+        assertFalse(knownUsersFilter.mightBeKnown("scanner"));
+
+        // Entities of the user are loaded again by a new processor.
+        search(createProcessor(knownUsersFilter), user, "(uid=*)");
+        assertTrue(knownUsersFilter.mightBeKnown("usernameTwo"));
+    }
+
+    @Test
+    public void mixedCaseSearchFindsUsers() throws LDAPException {
+        storage.users.put(user, List.of(user("username"), user("usernameTwo")));
+        String filter = "(&(objectClass=organizationalPerson)(uid=UserName))";
+        List<String> expected = List.of(userDn("username"));
+
+        // Storages may compare values with case, so searches are not passed to them by default.
+        assertEquals(expected, search(createProcessor(new KnownUsersFilter(false, 0.01)), user, filter));
+        assertTrue(storage.pushedDown.isEmpty());
+
+        properties.setSearchPushdownEnabled(true);
+        assertEquals(expected, search(createProcessor(new KnownUsersFilter(false, 0.01)), user, filter));
+        assertEquals(List.of("(uid=UserName)"), storage.pushedDown);
+    }
+
+    @Test
+    public void searchResultsAreCachedUntilEntitiesAreLoadedAgain() throws LDAPException {
+        storage.users.put(user, List.of(user("username")));
+        var processor = createProcessor(new KnownUsersFilter(false, 0.01));
+
+        assertEquals(List.of(userDn("username")), search(processor, user, "(uid=*)"));
+        assertEquals(List.of(userDn("username")), search(processor, user, "(uid=*)"));
+        assertEquals(1, processor.getSearchResultsCacheStats().hitCount());
+        assertEquals(1, storage.loads);
+
+        // Expired entities are loaded again, results of the old ones are not returned.
+        storage.users.put(user, List.of(user("username"), user("usernameTwo")));
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(properties.getSearchCacheExpirationMinutes() + 1));
+        assertEquals(List.of(userDn("username"), userDn("usernameTwo")), search(processor, user, "(uid=*)"));
+        assertEquals(1, processor.getSearchResultsCacheStats().hitCount());
+        assertEquals(2, storage.loads);
+    }
+
+    @Test
+    public void authenticationsWithSameEntitiesShareThem() throws LDAPException {
+        storage.users.put(user, List.of(user("username")));
+        storage.users.put(otherUser, List.of(user("username")));
+        storage.users.put(service, List.of(user("username"), user("usernameTwo")));
+        var processor = createProcessor(new KnownUsersFilter(false, 0.01));
+
+        search(processor, user, "(uid=*)");
+        // Entities are loaded for each authentication, but the same ones are shared with their search results.
+        assertEquals(List.of(userDn("username")), search(processor, otherUser, "(uid=*)"));
+        assertEquals(2, storage.loads);
+        assertEquals(1, processor.getSearchResultsCacheStats().hitCount());
+
+        assertEquals(List.of(userDn("username"), userDn("usernameTwo")), search(processor, service, "(uid=*)"));
+        assertEquals(1, processor.getSearchResultsCacheStats().hitCount());
+    }
+
+    @Test
+    public void searchResultsAreEvictedBySize() throws LDAPException, InterruptedException {
+        properties.setSearchResultsCacheMaxSizeMb(1);
+        String largeValue = "a".repeat(600 * 1024);
+        storage.users.put(user, List.of(user("username"),
+                Map.of("uid", List.of("largeOne"), "description", List.of(largeValue)),
+                Map.of("uid", List.of("largeTwo"), "description", List.of(largeValue))));
+        var processor = createProcessor(new KnownUsersFilter(false, 0.01));
+
+        // Results of large entries do not fit into the cache, few small ones are kept.
+        search(processor, user, "(uid=large*)");
+        search(processor, user, "(uid=username)");
+        for (int i = 0; i < 100 && processor.getSearchResultsCacheStats().evictionCount() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, processor.getSearchResultsCacheStats().evictionCount());
+
+        assertEquals(2, search(processor, user, "(uid=large*)").size());
+        assertEquals(List.of(userDn("username")), search(processor, user, "(uid=username)"));
+        assertEquals(1, processor.getSearchResultsCacheStats().hitCount());
+    }
+
+    @Test
+    public void staleEntitiesAreReturnedWhileTheyAreRefreshed() throws LDAPException {
+        properties.setSearchCacheRefreshMinutes(1);
+        storage.users.put(user, List.of(user("username")));
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        refreshExecutor = tasks::add;
+        var processor = createProcessor(new KnownUsersFilter(false, 0.01));
+
+        assertEquals(List.of(userDn("username")), search(processor, user, "(uid=*)"));
+
+        storage.users.put(user, List.of(user("username"), user("usernameTwo")));
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        // The search does not wait for the refresh.
+        assertEquals(List.of(userDn("username")), search(processor, user, "(uid=*)"));
+        assertEquals(1, storage.loads);
+
+        while ( ! tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        assertEquals(2, storage.loads);
+        assertEquals(List.of(userDn("username"), userDn("usernameTwo")), search(processor, user, "(uid=*)"));
+    }
+
+    @Test
+    public void entitiesAreLoadedFromStreams() throws LDAPException {
+        storage.users.put(user, List.of(user("username"), user("usernameTwo")));
+        storage.groups.put(user, List.of(group("groupOne", "username")));
+
+        assertEquals(List.of(userDn("username"), userDn("usernameTwo"), groupDn("groupOne")),
+                search(createProcessor(new KnownUsersFilter(false, 0.01)), user, "(objectClass=*)"));
+        assertEquals(1, storage.loads);
+        assertEquals(2, storage.closedStreams);
+    }
+
+    @Test
+    public void changesAreAppliedToLoadedEntities() throws LDAPException {
+        storage.users.put(user, List.of(user("username"), user("usernameTwo"), user("usernameThree")));
+        storage.groups.put(user, List.of(group("groupOne", "username", "usernameTwo")));
+        storage.syncToken = "1";
+        var processor = createProcessor(new KnownUsersFilter(false, 0.01));
+        assertEquals(4, search(processor, user, "(objectClass=*)").size());
+
+        // The second user is renamed and leaves the group, the third one is deleted and the fourth one is added.
+        storage.changes.put("1", new EntryChanges(
+                CompactEntry.fromMaps(List.of(Map.of("uid", List.of("usernameTwo"), "cn", List.of("Renamed")),
+                        user("usernameFour"))),
+                CompactEntry.fromMaps(List.of(group("groupOne", "username"))),
+                List.of("usernameThree"), List.of(), "2"));
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(properties.getSearchCacheExpirationMinutes() + 1));
+
+        assertEquals(List.of(userDn("username"), userDn("usernameTwo"), groupDn("groupOne"), userDn("usernameFour")),
+                search(processor, user, "(objectClass=*)"));
+        assertEquals(List.of(userDn("usernameTwo")), search(processor, user, "(cn=Renamed)"));
+        assertEquals(List.of(), search(processor, user, "(member=" + userDn("usernameTwo") + ")"));
+        assertEquals(List.of(groupDn("groupOne")), search(processor, user, "(member=" + userDn("username") + ")"));
+        assertEquals(1, storage.loads);
+    }
+
+    @Test
+    public void entitiesAreLoadedAgainForUnknownSyncToken() throws LDAPException {
+        storage.users.put(user, List.of(user("username")));
+        storage.syncToken = "1";
+        var processor = createProcessor(new KnownUsersFilter(false, 0.01));
+        assertEquals(List.of(userDn("username")), search(processor, user, "(uid=*)"));
+
+        // The storage does not know changes since the token anymore.
+        storage.users.put(user, List.of(user("usernameTwo")));
+        storage.syncToken = "2";
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(properties.getSearchCacheExpirationMinutes() + 1));
+
+        assertEquals(List.of(userDn("usernameTwo")), search(processor, user, "(uid=*)"));
+        assertEquals(2, storage.loads);
+    }
+
+    private SearchOperationProcessor createProcessor(KnownUsersFilter knownUsersFilter) {
+        return new SearchOperationProcessor(storage, new LdapNamingHelper(properties), properties, knownUsersFilter,
+                refreshExecutor, nanos::get);
+    }
+
+    private static List<String> search(SearchOperationProcessor processor, Authentication authentication,
+                                       String filter) throws LDAPException {
+        var request = new SearchRequestProtocolOp(BASE_DN, SearchScope.SUB, DereferencePolicy.NEVER, 0, 0, false,
+                Filter.create(filter), List.of());
+        List<String> dns = new ArrayList<>();
+        processor.doSearch(authentication, request, List.of(), entry -> dns.add(entry.getDN()));
+        return dns;
+    }
+
+    private static String userDn(String name) {
+        return "uid=" + name + ",ou=people," + BASE_DN;
+    }
+
+    private static String groupDn(String name) {
+        return "uid=" + name + ",ou=groups," + BASE_DN;
+    }
+
+    private static Map<String, List<String>> user(String name) {
+        return Map.of("uid", List.of(name), "cn", List.of(name), "memberof", List.of());
+    }
+
+    private static Map<String, List<String>> group(String name, String... members) {
+        return Map.of("uid", List.of(name), "member", List.of(members));
+    }
+
+    private static LdapConfigurationProperties createProperties() {
+        var properties = new LdapConfigurationProperties();
+        properties.setBaseDn(BASE_DN);
+        properties.setServicesBaseDn("ou=services," + BASE_DN);
+        properties.setUsersBaseDn("ou=people," + BASE_DN);
+        properties.setGroupsBaseDn("ou=groups," + BASE_DN);
+        properties.setUserClassName("organizationalPerson");
+        properties.setGroupClassName("groupOfNames");
+        properties.setMainNameAttribute("uid");
+        return properties;
+    }
+
+    /**
+     * Storage, where every authentication sees its own users. Predicates are compared ignoring case, as LDAP does.
+     * Entities are read by streams only, as storages of large directories do.
+     * Changes are tracked, when the sync token is set. Changes since other tokens are not known.
+     */
+    private static class TestViewStorage implements DataStorage, SearchPushdown {
+        final Map<Authentication, List<Map<String, List<String>>>> users = new HashMap<>();
+        final Map<Authentication, List<Map<String, List<String>>>> groups = new HashMap<>();
+        final List<String> pushedDown = new ArrayList<>();
+        // Changes since the token.
+        final Map<String, EntryChanges> changes = new HashMap<>();
+        String syncToken;
+        Authentication allUsersView;
+        int loads;
+        int closedStreams;
+
+        @Override
+        public Authentication authenticateUser(String userName, String password) {
+            return Authentication.NEGATIVE;
+        }
+
+        @Override
+        public Authentication authenticateService(String serviceName, String token) {
+            return Authentication.NEGATIVE;
+        }
+
+        @Override
+        public boolean seesAllUsers(Authentication authentication) {
+            return authentication == allUsersView;
+        }
+
+        @Override
+        public List<Map<String, List<String>>> getAllUsers(Authentication authentication) {
+            throw new UnsupportedOperationException("Users are read by streams");
+        }
+
+        @Override
+        public List<Map<String, List<String>>> getAllGroups(Authentication authentication) {
+            throw new UnsupportedOperationException("Groups are read by streams");
+        }
+
+        @Override
+        public Stream<CompactEntry> streamUserEntries(Authentication authentication) {
+            loads++;
+            return stream(users.getOrDefault(authentication, List.of()));
+        }
+
+        @Override
+        public Stream<CompactEntry> streamGroupEntries(Authentication authentication) {
+            return stream(groups.getOrDefault(authentication, List.of()));
+        }
+
+        @Override
+        public String getSyncToken(Authentication authentication) {
+            return syncToken;
+        }
+
+        @Override
+        public Optional<EntryChanges> getChangesSince(Authentication authentication, String syncToken) {
+            return Optional.ofNullable(changes.get(syncToken));
+        }
+
+        private Stream<CompactEntry> stream(List<Map<String, List<String>>> entities) {
+            return entities.stream()
+                    .map(CompactEntry::of)
+                    .onClose(() -> closedStreams++);
+        }
+
+        @Override
+        public Optional<List<CompactEntry>> findUsers(Authentication authentication, SearchPredicate predicate,
+                                                      List<String> attributes) {
+            pushedDown.add(predicate.toString());
+            return Optional.of(users.getOrDefault(authentication, List.of()).stream()
+                    .filter(predicate::matches)
+                    .map(CompactEntry::of)
+                    .collect(Collectors.toList()));
+        }
+    }
+}
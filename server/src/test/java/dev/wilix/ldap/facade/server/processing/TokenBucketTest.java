@@ -0,0 +1,39 @@
+package dev.wilix.ldap.facade.server.processing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketTest {
+
+    @Test
+    public void burstIsAllowedAndThenRejected() {
+        var bucket = new TokenBucket(1, 3);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void checkDoesNotAcquire() {
+        var bucket = new TokenBucket(1, 1);
+
+        assertTrue(bucket.hasTokens());
+        assertTrue(bucket.hasTokens());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.hasTokens());
+    }
+
+    @Test
+    public void throttlerLimitsEveryDnSeparately() {
+        var throttler = new BindThrottler(1, 1, 0, 0, 1);
+
+        assertTrue(throttler.isAllowed("uid=one", null));
+        throttler.countFailure("uid=one", null);
+        assertFalse(throttler.isAllowed("uid=one", null));
+        assertTrue(throttler.isAllowed("uid=two", null));
+    }
+}